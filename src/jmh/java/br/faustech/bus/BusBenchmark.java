@@ -0,0 +1,92 @@
+package br.faustech.bus;
+
+import br.faustech.memory.DenseMemory;
+import br.faustech.memory.FrameBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single-word reads and writes through the bus, for RAM and for framebuffer addresses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusBenchmark {
+
+    private static final int WIDTH = 320;
+
+    private static final int HEIGHT = 240;
+
+    private static final int MEMORY_SIZE = 4194304; // 4MB
+
+    private static final int RAM_ADDRESS = 1024; // Word-aligned RAM address
+
+    private static final int FRAME_BUFFER_ADDRESS = MEMORY_SIZE + 4 + 1024; // Pixel address past the swap register
+
+    private final int[] word = {0x00FF8040}; // Word written on every operation
+
+    private Bus bus; // Bus under test
+
+    /**
+     * Creates a bus over fresh RAM and a fresh framebuffer.
+     */
+    @Setup
+    public void setup() {
+
+        bus = new Bus(new FrameBuffer(WIDTH, HEIGHT), new DenseMemory(MEMORY_SIZE));
+    }
+
+    /**
+     * Reads a word from RAM.
+     *
+     * @return the words read
+     */
+    @Benchmark
+    public int[] readMemory() {
+
+        return bus.read(RAM_ADDRESS, RAM_ADDRESS + 4);
+    }
+
+    /**
+     * Writes a word to RAM.
+     */
+    @Benchmark
+    public void writeMemory() {
+
+        bus.write(RAM_ADDRESS, word);
+    }
+
+    /**
+     * Reads a pixel from the framebuffer.
+     *
+     * @return the words read
+     */
+    @Benchmark
+    public int[] readFrameBuffer() {
+
+        return bus.read(FRAME_BUFFER_ADDRESS, FRAME_BUFFER_ADDRESS + 4);
+    }
+
+    /**
+     * Writes a pixel to the framebuffer.
+     */
+    @Benchmark
+    public void writeFrameBuffer() {
+
+        bus.write(FRAME_BUFFER_ADDRESS, word);
+    }
+
+}
@@ -0,0 +1,119 @@
+package br.faustech.cpu;
+
+import br.faustech.Main;
+import br.faustech.bus.Bus;
+import br.faustech.memory.DenseMemory;
+import br.faustech.memory.FrameBuffer;
+import br.faustech.memory.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of executing one instruction on an endless ALU loop and an endless load/store loop.
+ * Each invocation retires {@link #INSTRUCTIONS} instructions, so scores are reported per instruction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CPUBenchmark {
+
+    private static final int WIDTH = 320;
+
+    private static final int HEIGHT = 240;
+
+    private static final int MEMORY_SIZE = 4096;
+
+    private static final int INSTRUCTIONS = 1000; // Instructions retired per benchmark invocation
+
+    private static final int[] ALU_LOOP = {
+            0b00000000000100000000000010010011, // addi x1, x0, 1
+            0b00000000001100000000000100010011, // addi x2, x0, 3
+            0b00000000000100011000000110110011, // add x3, x3, x1
+            0b00000000001000011100001000110011, // xor x4, x3, x2
+            0b00000000001100100001001010010011, // slli x5, x4, 3
+            0b01000000001100101000001100110011, // sub x6, x5, x3
+            0b00000000010000110111001110110011, // and x7, x6, x4
+            0b00000000010100111011010000110011, // sltu x8, x7, x5
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b11111110010111111111000001101111, // jal x0, -28
+    };
+
+    private static final int[] LOAD_STORE_LOOP = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b01000000000000000000001000010011, // addi x4, x0, 1024
+            0b00000000000100100010000000100011, // sw x1, 0(x4)
+            0b00000000000000100010001010000011, // lw x5, 0(x4)
+            0b00000000010100100001001000100011, // sh x5, 4(x4)
+            0b00000000010000100101001100000011, // lhu x6, 4(x4)
+            0b00000000011000100000010000100011, // sb x6, 8(x4)
+            0b00000000100000100000001110000011, // lb x7, 8(x4)
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b11111110010111111111000001101111, // jal x0, -28
+    };
+
+    @Param({"alu", "loadStore"})
+    private String program;
+
+    private Memory memory; // Memory the program is fetched from
+
+    private CPU cpu; // CPU running the program
+
+    /**
+     * Loads the selected loop into a fresh machine with execution logging disabled.
+     */
+    @Setup
+    public void setup() {
+
+        Main.setLogEnabled(false);
+        memory = new DenseMemory(MEMORY_SIZE);
+        final Bus bus = new Bus(new FrameBuffer(WIDTH, HEIGHT), memory);
+        bus.write(0, program.equals("alu") ? ALU_LOOP : LOAD_STORE_LOOP);
+        cpu = new CPU(bus);
+    }
+
+    /**
+     * Fetches raw instruction words and executes them, decoding every one.
+     *
+     * @return the program counter after the last instruction
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int executeInstruction() {
+
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            cpu.executeInstruction(memory.load32(cpu.getProgramCounter()));
+        }
+        return cpu.getProgramCounter();
+    }
+
+    /**
+     * Executes instructions through the decode cache, as the interpreter loop does.
+     *
+     * @return the program counter after the last instruction
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int processNextInstruction() {
+
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            cpu.processNextInstruction();
+        }
+        return cpu.getProgramCounter();
+    }
+
+}
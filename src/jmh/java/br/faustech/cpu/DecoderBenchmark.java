@@ -0,0 +1,76 @@
+package br.faustech.cpu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures instruction decoding on one representative encoding of each instruction format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+
+    @Param({
+            "00000000000100011000000110110011", // add x3, x3, x1
+            "00000110010000000000000100010011", // addi x2, x0, 100
+            "00000000000000100010001010000011", // lw x5, 0(x4)
+            "00000000001100100010000000100011", // sw x3, 0(x4)
+            "11111110001000001100011011100011", // blt x1, x2, -20
+            "00010000000000000000000100110111", // lui x2, 0x10000
+            "11111110010111111111000001101111", // jal x0, -28
+            "00110000010000000001000001110011"  // csrrw x0, mie, x0
+    })
+    private String encoding;
+
+    private int instruction; // The encoding as an instruction word
+
+    private final DecodedInstruction decodedInstruction = new DecodedInstruction(); // Reused decode target
+
+    /**
+     * Parses the binary encoding of the instruction under test.
+     */
+    @Setup
+    public void setup() {
+
+        instruction = Integer.parseUnsignedInt(encoding, 2);
+    }
+
+    /**
+     * Decodes the instruction into its textual form, as the execution log does.
+     *
+     * @return the decoded instruction text
+     */
+    @Benchmark
+    public String decodeInstruction() {
+
+        return Decoder.decodeInstruction(instruction);
+    }
+
+    /**
+     * Decodes the instruction into a reused structured instruction, as the interpreter does.
+     *
+     * @return the decoded instruction
+     */
+    @Benchmark
+    public DecodedInstruction decode() {
+
+        Decoder.decode(instruction, decodedInstruction);
+        return decodedInstruction;
+    }
+
+}
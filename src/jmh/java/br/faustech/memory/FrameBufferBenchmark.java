@@ -0,0 +1,115 @@
+package br.faustech.memory;
+
+import br.faustech.comum.RenderDataDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a pixel into the back buffer, filling a whole frame, and getting a whole frame ready for
+ * upload, either as render data arrays or copied straight into upload buffers. Run with -prof gc to see the
+ * allocation rate of the pixel writes, which should be zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBufferBenchmark {
+
+    private static final int WIDTH = 320;
+
+    private static final int HEIGHT = 240;
+
+    private static final int COLOR = 0x00FF8040; // Color written on every operation
+
+    private FrameBuffer frameBuffer; // Framebuffer under test
+
+    private FrameBuffer packedFrameBuffer; // Packed framebuffer under test
+
+    private int address; // Address of the next pixel to write
+
+    private ByteBuffer pixels, vertices; // Upload buffers, like the renderer's mapped ring slots
+
+    /**
+     * Creates a fresh framebuffer.
+     */
+    @Setup
+    public void setup() {
+
+        frameBuffer = new FrameBuffer(WIDTH, HEIGHT);
+        packedFrameBuffer = new FrameBuffer(WIDTH, HEIGHT, true);
+        pixels = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 16);
+        vertices = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 32);
+    }
+
+    /**
+     * Writes one pixel, walking across the frame so every row gets touched.
+     */
+    @Benchmark
+    public void writePixel() {
+
+        frameBuffer.writePixel(address, COLOR);
+        address = (address + 4) % (WIDTH * HEIGHT * 4);
+    }
+
+    /**
+     * Writes every pixel of a frame and swaps it in, as a guest redrawing the whole screen does.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void fillFrame() {
+
+        for (int pixel = 0; pixel < WIDTH * HEIGHT; pixel++) {
+            frameBuffer.writePixel(pixel * 4, COLOR + pixel);
+        }
+        frameBuffer.swap();
+    }
+
+    /**
+     * Writes every pixel of a packed frame and swaps it in.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void fillPackedFrame() {
+
+        for (int pixel = 0; pixel < WIDTH * HEIGHT; pixel++) {
+            packedFrameBuffer.writePixel(pixel * 4, COLOR + pixel);
+        }
+        packedFrameBuffer.swap();
+    }
+
+    /**
+     * Builds the vertex and pixel data the GPU uploads for one frame.
+     *
+     * @return the render data
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public RenderDataDto getRenderData() {
+
+        return frameBuffer.getRenderData();
+    }
+
+    /**
+     * Copies the color floats and vertices of one frame into upload buffers.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void copyFront() {
+
+        frameBuffer.copyFront(pixels, 0, vertices, 0);
+    }
+
+}
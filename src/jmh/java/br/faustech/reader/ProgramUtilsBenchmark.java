@@ -0,0 +1,74 @@
+package br.faustech.reader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the text image of the UFMS demo program, and reading it back from the program cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramUtilsBenchmark {
+
+    private final File program = new File("src/test/demos/ufms_demo.txt"); // Demo program, relative to the project
+
+    private ProgramUtils programUtils; // Reader under test
+
+    private ProgramCache cache; // Cache holding the parsed image of the program
+
+    /**
+     * Creates the reader, which does not touch the bus, and a cache in a temporary directory that already
+     * holds the program.
+     *
+     * @throws IOException if the cache cannot be filled
+     */
+    @Setup
+    public void setup() throws IOException {
+
+        programUtils = new ProgramUtils(null, null);
+        cache = new ProgramCache(Files.createTempDirectory("program-cache"));
+        cache.readTxtFile(program);
+    }
+
+    /**
+     * Reads and parses the whole program file.
+     *
+     * @return the program words
+     * @throws IOException if the program file cannot be read
+     */
+    @Benchmark
+    public int[] readTxtFile() throws IOException {
+
+        return programUtils.readTxtFile(program);
+    }
+
+    /**
+     * Reads the program from its cached image.
+     *
+     * @return the program words
+     * @throws IOException if the cached image cannot be read
+     */
+    @Benchmark
+    public int[] readCachedTxtFile() throws IOException {
+
+        return cache.readTxtFile(program);
+    }
+
+}
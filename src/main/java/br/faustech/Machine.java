@@ -0,0 +1,109 @@
+package br.faustech;
+
+import br.faustech.bus.Bus;
+import br.faustech.cpu.CPU;
+import br.faustech.cpu.ExitReason;
+import br.faustech.memory.DenseMemory;
+import br.faustech.memory.FrameBuffer;
+import br.faustech.memory.Memory;
+import br.faustech.reader.ElfLoader;
+import br.faustech.reader.ProgramUtils;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A complete emulated machine: memory, framebuffer, the bus connecting them and the CPU, which also holds
+ * the interrupt state. Machines share nothing, so any number of them can run in the same JVM.
+ */
+@Getter
+public class Machine {
+
+    private final Memory memory; // The RAM of the machine
+
+    private final FrameBuffer frameBuffer; // The framebuffer mapped after the RAM
+
+    private final Bus bus; // The bus connecting the CPU to memory and framebuffer
+
+    private final CPU cpu; // The CPU running the program
+
+    /**
+     * Constructs a machine with the given amount of RAM and screen dimensions.
+     *
+     * @param memorySize the size of the RAM in bytes
+     * @param width      the width of the screen in pixels
+     * @param height     the height of the screen in pixels
+     */
+    public Machine(final int memorySize, final int width, final int height) {
+
+        this(new DenseMemory(memorySize), width, height);
+    }
+
+    /**
+     * Constructs a machine around the given RAM, e.g. a {@link br.faustech.memory.SparseMemory} for large
+     * address spaces.
+     *
+     * @param memory the RAM of the machine
+     * @param width  the width of the screen in pixels
+     * @param height the height of the screen in pixels
+     */
+    public Machine(final Memory memory, final int width, final int height) {
+
+        this(memory, new FrameBuffer(width, height));
+    }
+
+    /**
+     * Constructs a machine around the given RAM and framebuffer, e.g. a packed one.
+     *
+     * @param memory      the RAM of the machine
+     * @param frameBuffer the framebuffer mapped after the RAM
+     */
+    public Machine(final Memory memory, final FrameBuffer frameBuffer) {
+
+        this.memory = memory;
+        this.frameBuffer = frameBuffer;
+        this.bus = new Bus(frameBuffer, memory);
+        this.cpu = new CPU(bus);
+    }
+
+    /**
+     * Writes a program into memory, starting at address 0.
+     *
+     * @param program the program instructions
+     */
+    public void load(final int[] program) {
+
+        bus.write(0, program);
+    }
+
+    /**
+     * Loads a program file into memory. ELF executables are loaded at the addresses of their segments and the
+     * CPU starts at their entry point; .bin and .txt programs are written starting at address 0.
+     *
+     * @param file the program file
+     * @throws IOException if the file cannot be read
+     */
+    public void load(final File file) throws IOException {
+
+        if (ElfLoader.isElf(file)) {
+            cpu.setProgramCounter(new ElfLoader(memory).load(file));
+            return;
+        }
+        final ProgramUtils programUtils = new ProgramUtils(bus);
+        programUtils.writeProgramInMemory(programUtils.readFile(file));
+    }
+
+    /**
+     * Runs the CPU on the calling thread until the program exits or one of the budgets is used up.
+     *
+     * @param maxInstructions the maximum number of instructions to retire
+     * @param timeoutMillis   the maximum wall time to run for, in milliseconds
+     * @return the reason the run stopped
+     */
+    public ExitReason run(final long maxInstructions, final long timeoutMillis) {
+
+        return cpu.runUntilExit(maxInstructions, timeoutMillis);
+    }
+
+}
@@ -2,15 +2,33 @@ package br.faustech;
 
 import br.faustech.bus.Bus;
 import br.faustech.cpu.CPU;
+import br.faustech.cpu.ExitReason;
+import br.faustech.fleet.FleetJob;
+import br.faustech.fleet.FleetJobResult;
+import br.faustech.fleet.FleetRunner;
+import br.faustech.gpu.Display;
+import br.faustech.gpu.FFmpegFrameEncoder;
+import br.faustech.gpu.FrameRecorder;
 import br.faustech.gpu.GPU;
+import br.faustech.gpu.HeadlessDisplay;
+import br.faustech.memory.DenseMemory;
 import br.faustech.memory.FrameBuffer;
 import br.faustech.memory.Memory;
-import br.faustech.reader.ProgramUtils;
+import br.faustech.memory.SparseMemory;
 import lombok.Getter;
 import lombok.extern.java.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Log
 public class Main {
@@ -19,49 +37,302 @@ public class Main {
 
     private static final int HEIGHT = 240;
 
-    private static final int FRAME_BUFFER_SIZE = WIDTH * HEIGHT * 4; // 4 bytes per pixel
+    private static final int MEMORY_SIZE = 4194304; // 4MB, the default RAM size
 
-    private static final int MEMORY_SIZE = 4194304; // 4MB
+    private static final int JIT_THRESHOLD = 1000; // Block executions before a block is compiled
 
     @Getter
     private static final int clockSpeed = 1000; // 1Hz
 
-    private static boolean LOG = true;
+    private static volatile boolean LOG = true;
 
-    private static GPU gpu;
-
-    private static CPU cpu;
-
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
 
         if (args.length < 1) {
             throw new IllegalArgumentException("Program file name not provided.");
         }
 
-        LOG = args.length > 1 && args[1].equals("--log");
+        final List<String> options = Arrays.asList(args).subList(1, args.length);
+        LOG = options.contains("--log");
 
-        setup(args);
+        if (options.contains("--fleet")) {
+            runFleet(new File(args[0]), options);
+            return;
+        }
 
-        cpu.start();
-        gpu.start();
+        final Machine machine = setup(args[0], options);
+        final CPU cpu = machine.getCpu();
 
-        while (gpu.isAlive()) {
-            if (gpu.getState() == Thread.State.TERMINATED) {
-                gpu.interrupt();
-                cpu.interrupt();
+        if (options.contains("--headless")) {
+            final HeadlessDisplay display = headlessDisplay(machine, options);
+            final FrameRecorder recorder = frameRecorder(machine, options);
+            runHeadless(machine,
+                    Long.parseLong(optionValue(options, "--max-instructions", String.valueOf(Long.MAX_VALUE))),
+                    Long.parseLong(optionValue(options, "--timeout", String.valueOf(Long.MAX_VALUE / 1_000_000_000L))));
+            if (display != null) {
+                display.close();
+                System.out.printf("Frames: %d, last frame hash: %016x, combined hash: %016x%n", display.getFrames(),
+                        display.getLastFrameHash(), display.getCombinedHash());
             }
+            closeRecorder(recorder);
+            return;
+        }
+
+        final Display display = new GPU(WIDTH, HEIGHT, machine.getFrameBuffer(), cpu);
+        final FrameRecorder recorder = frameRecorder(machine, options);
+        cpu.setEbreakListener(display::close);
+
+        cpu.start();
+        display.open();
+
+        // Sleep until the window closes instead of spinning on the GPU state
+        display.awaitClose();
+        cpu.interrupt();
+        if (recorder != null) {
+            cpu.join();
+            closeRecorder(recorder);
+        }
+    }
+
+    /**
+     * Creates the machine, loads the program into it and configures its execution mode. With --packed the
+     * framebuffer keeps one 32-bit word per pixel and is drawn as a single texture.
+     *
+     * @param programPath the path of the program file
+     * @param options     the command line options
+     * @return the machine ready to run
+     * @throws IOException if the program file cannot be read
+     */
+    private static Machine setup(final String programPath, final List<String> options) throws IOException {
+
+        final Machine machine = new Machine(memoryFactory(options).get(),
+                new FrameBuffer(WIDTH, HEIGHT, options.contains("--packed")));
+        machine.load(new File(programPath));
+        configure(machine.getCpu(), options);
+        return machine;
+    }
+
+    /**
+     * Creates the headless display of a headless run when frames are asked for: --frame-hashes prints the hash
+     * of the frames, and --dump-frames N,M,... also writes those frames to --dump-dir (frames by default) as
+     * --dump-format png or raw RGBA.
+     *
+     * @param machine the machine whose frames are presented
+     * @param options the command line options
+     * @return the open display, or null if no frames are asked for
+     */
+    private static HeadlessDisplay headlessDisplay(final Machine machine, final List<String> options) {
+
+        if (!options.contains("--frame-hashes") && !options.contains("--dump-frames")) {
+            return null;
+        }
+        final Set<Long> dumpFrames = Arrays.stream(optionValue(options, "--dump-frames", "").split(","))
+                .filter(frame -> !frame.isBlank()).map(frame -> Long.parseLong(frame.trim()))
+                .collect(Collectors.toSet());
+        final HeadlessDisplay display = new HeadlessDisplay(machine.getFrameBuffer(), dumpFrames::contains,
+                Paths.get(optionValue(options, "--dump-dir", "frames")),
+                HeadlessDisplay.DumpFormat.valueOf(optionValue(options, "--dump-format", "png").toUpperCase()));
+        display.open();
+        return display;
+    }
+
+    /**
+     * Creates the recorder of a run when --record FILE is given. Frames are encoded to the file at --record-fps
+     * frames per second (60 by default); up to --record-queue frames (8 by default) wait for the encoder, and
+     * when it falls further behind --record-policy drop (the default) skips frames while block stalls the guest.
+     *
+     * @param machine the machine whose frames are recorded
+     * @param options the command line options
+     * @return the started recorder, or null if no recording is asked for
+     * @throws IOException if the video file cannot be created
+     */
+    private static FrameRecorder frameRecorder(final Machine machine, final List<String> options) throws IOException {
+
+        if (!options.contains("--record")) {
+            return null;
+        }
+        final FrameRecorder recorder = new FrameRecorder(machine.getFrameBuffer(),
+                new FFmpegFrameEncoder(optionValue(options, "--record", ""), WIDTH, HEIGHT,
+                        Double.parseDouble(optionValue(options, "--record-fps", "60"))),
+                Integer.parseInt(optionValue(options, "--record-queue", "8")),
+                FrameRecorder.Policy.valueOf(optionValue(options, "--record-policy", "drop").toUpperCase()));
+        recorder.start();
+        return recorder;
+    }
+
+    /**
+     * Finishes a recording, waiting for the queued frames to be encoded, and prints its statistics.
+     *
+     * @param recorder the recorder, or null if nothing was recorded
+     * @throws IOException          if the video could not be written
+     * @throws InterruptedException if interrupted while waiting for the encoder
+     */
+    private static void closeRecorder(final FrameRecorder recorder) throws IOException, InterruptedException {
+
+        if (recorder == null) {
+            return;
+        }
+        recorder.close();
+        System.out.printf("Recorded frames: %d encoded, %d dropped, encode latency: %.3f ms average, %.3f ms max%n",
+                recorder.getEncodedFrames(), recorder.getDroppedFrames(), recorder.getAverageLatencyNanos() / 1e6,
+                recorder.getMaxLatencyNanos() / 1e6);
+    }
+
+    /**
+     * Returns the RAM size given with --memory MB, or the 4 MB default. The framebuffer is mapped right after
+     * the RAM, so programs that draw must be built for the same RAM size.
+     *
+     * @param options the command line options
+     * @return the RAM size in bytes
+     */
+    private static int memorySize(final List<String> options) {
+
+        if (!options.contains("--memory")) {
+            return MEMORY_SIZE;
+        }
+        final long megabytes = Long.parseLong(optionValue(options, "--memory", ""));
+        // The RAM and the framebuffer after it must stay below the device window
+        if (megabytes <= 0 || megabytes * 1024 * 1024 + WIDTH * HEIGHT * 8L + 4 > Bus.DEVICE_BASE) {
+            throw new IllegalArgumentException(String.format("Invalid memory size: %d MB.", megabytes));
         }
+        return (int) (megabytes * 1024 * 1024);
     }
 
-    private static void setup(String[] args) throws IOException {
-        final FrameBuffer frameBuffer = new FrameBuffer(FRAME_BUFFER_SIZE);
-        final Bus bus = new Bus(frameBuffer, new Memory(MEMORY_SIZE));
+    /**
+     * Returns a factory for the RAM of a machine: dense by default, or allocated page by page on first write
+     * with --sparse, which keeps large --memory sizes cheap.
+     *
+     * @param options the command line options
+     * @return the memory factory
+     */
+    private static Supplier<Memory> memoryFactory(final List<String> options) {
+
+        final int memorySize = memorySize(options);
+        if (options.contains("--sparse")) {
+            return () -> new SparseMemory(memorySize);
+        }
+        return () -> new DenseMemory(memorySize);
+    }
+
+    /**
+     * Sets the execution mode of a CPU from the command line options. With --instructions-per-tick N the
+     * machine timer advances once every N retired instructions instead of every millisecond, which makes
+     * timer interrupts deterministic.
+     *
+     * @param cpu     the CPU to configure
+     * @param options the command line options
+     */
+    private static void configure(final CPU cpu, final List<String> options) {
+
+        if (options.contains("--instructions-per-tick")) {
+            cpu.getClint().useInstructionClock(Long.parseLong(optionValue(options, "--instructions-per-tick", "")));
+        }
+        cpu.setBlockExecution(options.contains("--blocks"));
+        if (options.contains("--jit")) {
+            cpu.enableCompilation(JIT_THRESHOLD);
+        }
+    }
+
+    /**
+     * Runs a batch of headless jobs in this JVM and prints a report: every program of a directory, or one
+     * program once per seed given with --seeds. Jobs run on virtual threads, or on a pool of --threads threads.
+     *
+     * @param path    a directory of programs or a single program file
+     * @param options the command line options
+     * @throws IOException          if a program cannot be read
+     * @throws InterruptedException if interrupted while waiting for the jobs
+     */
+    private static void runFleet(final File path, final List<String> options) throws IOException, InterruptedException {
+
+        final List<FleetJob> jobs = path.isDirectory() ? FleetRunner.jobsFromDirectory(path)
+                : FleetRunner.jobsFromSeeds(path, Integer.parseInt(optionValue(options, "--seeds", "1")));
+        final FleetRunner runner = new FleetRunner(memoryFactory(options), WIDTH, HEIGHT,
+                Long.parseLong(optionValue(options, "--max-instructions", String.valueOf(Long.MAX_VALUE))),
+                Long.parseLong(optionValue(options, "--timeout", String.valueOf(Long.MAX_VALUE / 1_000_000_000L))) * 1000L,
+                cpu -> configure(cpu, options));
+
+        final int threads = Integer.parseInt(optionValue(options, "--threads", "0"));
+        try (ExecutorService executor = threads > 0 ? new ForkJoinPool(threads)
+                : Executors.newVirtualThreadPerTaskExecutor()) {
+            final long start = System.nanoTime();
+            final List<FleetJobResult> results = runner.run(jobs, executor);
+            FleetRunner.report(results, System.nanoTime() - start, System.out);
+        }
+    }
+
+    /**
+     * Returns the value following an option on the command line.
+     *
+     * @param options      the command line options
+     * @param name         the option name
+     * @param defaultValue the value to use when the option is absent
+     * @return the option value
+     */
+    private static String optionValue(final List<String> options, final String name, final String defaultValue) {
+
+        final int index = options.indexOf(name);
+        if (index < 0) {
+            return defaultValue;
+        }
+        if (index + 1 >= options.size()) {
+            throw new IllegalArgumentException(String.format("Option %s requires a value.", name));
+        }
+        return options.get(index + 1);
+    }
+
+    /**
+     * Runs the CPU on the main thread without the GPU and window, then prints a throughput report, the final
+     * register file and the interrupt counters the programs keep at memory positions 1024 and 1028.
+     *
+     * @param machine         the machine to run
+     * @param maxInstructions the maximum number of instructions to retire
+     * @param timeoutSeconds  the maximum wall time to run for, in seconds
+     */
+    private static void runHeadless(final Machine machine, final long maxInstructions, final long timeoutSeconds) {
+
+        final CPU cpu = machine.getCpu();
+        final Bus bus = machine.getBus();
+        final long start = System.nanoTime();
+        final ExitReason exitReason = machine.run(maxInstructions, timeoutSeconds * 1000L);
+        final long elapsed = System.nanoTime() - start;
+
+        final long instructions = cpu.getInstructionCount();
+        System.out.printf("Exit reason: %s%n", exitReason);
+        System.out.printf("Retired instructions: %d%n", instructions);
+        System.out.printf("Wall time: %.3f ms%n", elapsed / 1e6);
+        System.out.printf("MIPS: %.2f%n", instructions / (elapsed / 1e3));
+        System.out.printf("PC: %d%n", cpu.getProgramCounter());
+        System.out.printf("Resident memory: %d KB of %d KB%n", machine.getMemory().getResidentBytes() / 1024,
+                machine.getMemory().getMemorySize() / 1024);
+
+        final int[] registers = cpu.getRegisters();
+        for (int i = 0; i < registers.length; i += 4) {
+            System.out.printf("x%-2d = %11d  x%-2d = %11d  x%-2d = %11d  x%-2d = %11d%n", i, registers[i], i + 1,
+                    registers[i + 1], i + 2, registers[i + 2], i + 3, registers[i + 3]);
+        }
+
+        System.out.printf("Timer Interrupt Count (memory at position 1024): %d%n", bus.load32(1024));
+        System.out.printf("Key Interrupt Count (memory at position 1028): %d%n", bus.load32(1028));
+    }
+
+    /**
+     * Tells whether execution logging is enabled, so callers can skip building log messages.
+     *
+     * @return true if the emulator was started with --log
+     */
+    public static boolean isLogEnabled() {
+
+        return LOG;
+    }
 
-        ProgramUtils programUtils = new ProgramUtils(bus);
-        programUtils.writeProgramInMemory(programUtils.readFile(new File(args[0])));
+    /**
+     * Enables or disables execution logging, e.g. for embedding the emulator without going through main.
+     *
+     * @param enabled true to log every executed instruction
+     */
+    public static void setLogEnabled(final boolean enabled) {
 
-        gpu = new GPU(WIDTH, HEIGHT, frameBuffer);
-        cpu = new CPU(bus);
+        LOG = enabled;
     }
 
     public static void info(String message) {
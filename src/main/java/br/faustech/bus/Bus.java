@@ -1,108 +1,300 @@
 package br.faustech.bus;
 
-import br.faustech.comum.ComponentType;
+import br.faustech.comum.Device;
 import br.faustech.memory.FrameBuffer;
 import br.faustech.memory.Memory;
 import br.faustech.memory.MemoryException;
+import br.faustech.timer.Clint;
+import lombok.Getter;
 import lombok.extern.java.Log;
 
-import static br.faustech.comum.ComponentType.FRAME_BUFFER;
-import static br.faustech.comum.ComponentType.MEMORY;
+import java.util.Arrays;
 
 /**
  * Represents a bus system that facilitates communication between different components like memory
- * and frame buffers.
+ * and frame buffers. RAM starts at address 0 and is checked first; every other address is resolved through a
+ * two-level page table that maps each page to the device region covering it, so adding devices does not make the
+ * per-access lookup any longer. Its second-level tables are allocated only where devices are mapped, so the
+ * table stays small however far apart the devices are. The top of the positive address space, from {@link #DEVICE_BASE}, is a window
+ * reserved for built-in devices such as the timer, which the RAM and the frame buffer after it never reach.
  */
 @Log // Lombok annotation to enable logging
 public class Bus {
 
-    private final FrameBuffer frameBuffer; // The frame buffer component
+    public static final int PAGE_SHIFT = 12; // Pages of 4 KB in the device page table
 
-    private final int frameBufferSize = FrameBuffer.getBufferSize(); // Size of the frame buffer component
+    public static final int DEVICE_BASE = 0x7F000000; // Start of the device window, above any RAM
 
+    static final int TABLE_SHIFT = 10; // Pages per second-level table, 4 MB of addresses
+
+    static final int TABLE_PAGES = 1 << TABLE_SHIFT; // Number of pages per second-level table
+
+    static final int PAGE_INDEX_MASK = TABLE_PAGES - 1; // Index of a page within its table
+
+    @Getter
     private final Memory memory; // The memory component
 
-    private final int memorySize = Memory.getMemorySize(); // Size of the memory component
+    private final int memorySize; // Size of the memory component
+
+    @Getter
+    private final Clint clint = new Clint(); // The machine timer
 
+    // Device region per page, per table of pages; null where nothing is mapped
+    private final Region[][] pages = new Region[1 << (31 - PAGE_SHIFT - TABLE_SHIFT)][];
 
     /**
-     * Constructs a Bus with specified frame buffer and memory components.
+     * A device mapped over a range of addresses.
+     *
+     * @param base   the first address of the range
+     * @param size   the size of the range in bytes
+     * @param device the device handling accesses to the range
+     */
+    private record Region(int base, int size, Device device) {
+
+    }
+
+    /**
+     * Constructs a Bus with specified frame buffer and memory components. The frame buffer is mapped right
+     * after the RAM, with its swap register first, and the timer at {@link Clint#BASE_ADDRESS} in the device
+     * window.
      *
      * @param frameBuffer The frame buffer to manage.
      * @param memory      The memory to manage.
+     * @throws IllegalArgumentException if the RAM and the frame buffer reach into the device window
      */
     public Bus(final FrameBuffer frameBuffer, final Memory memory) {
 
-        this.frameBuffer = frameBuffer;
         this.memory = memory;
+        this.memorySize = memory.getMemorySize();
+        final long frameBufferEnd = (long) memorySize + frameBuffer.getBufferSize() + 4;
+        if (frameBufferEnd > DEVICE_BASE) {
+            throw new IllegalArgumentException(String.format(
+                    "Memory of %d bytes and its frame buffer reach into the device window at 0x%08x", memorySize,
+                    DEVICE_BASE));
+        }
+        registerDevice(memorySize, (int) frameBufferEnd - memorySize, frameBuffer);
+        registerDevice(Clint.BASE_ADDRESS, Clint.SIZE, clint);
     }
 
     /**
-     * Writes integer data to the appropriate component based on the address.
+     * Maps a device over a range of addresses above the RAM. Two devices cannot share a page.
      *
-     * @param address The starting address for the data.
-     * @param value   The integer array to write.
+     * @param baseAddress the first address of the range
+     * @param size        the size of the range in bytes
+     * @param device      the device handling accesses to the range
+     * @throws IllegalArgumentException if the range is invalid, overlaps the RAM or shares a page with another
+     *                                  device
      */
-    public void write(final int address, final int[] value) {
+    public void registerDevice(final int baseAddress, final int size, final Device device) {
+
+        if (baseAddress < 0 || size <= 0 || baseAddress + size - 1 < baseAddress) {
+            throw new IllegalArgumentException(String.format("Invalid device range: %d (+%d)", baseAddress, size));
+        }
+        if (baseAddress < memorySize) {
+            throw new IllegalArgumentException(String.format("Device at %d overlaps the memory of %d bytes",
+                    baseAddress, memorySize));
+        }
+
+        final int first = baseAddress >>> PAGE_SHIFT;
+        final int last = (baseAddress + size - 1) >>> PAGE_SHIFT;
+        for (int page = first; page <= last; page++) {
+            final Region[] table = pages[page >>> TABLE_SHIFT];
+            if (table != null && table[page & PAGE_INDEX_MASK] != null) {
+                throw new IllegalArgumentException(String.format("Device at %d shares a page with the device at %d",
+                        baseAddress, table[page & PAGE_INDEX_MASK].base()));
+            }
+        }
+
+        final Region region = new Region(baseAddress, size, device);
+        for (int page = first; page <= last; ) {
+            final int end = Math.min(last, page | PAGE_INDEX_MASK); // Last page of the range within the table
+            Region[] table = pages[page >>> TABLE_SHIFT];
+            if (table == null) {
+                table = new Region[TABLE_PAGES];
+                pages[page >>> TABLE_SHIFT] = table;
+            }
+            Arrays.fill(table, page & PAGE_INDEX_MASK, (end & PAGE_INDEX_MASK) + 1, region);
+            page = end + 1;
+        }
+    }
+
+    /**
+     * Returns the number of second-level page tables allocated for the devices mapped so far.
+     *
+     * @return the number of allocated tables
+     */
+    int getAllocatedTables() {
+
+        return (int) Arrays.stream(pages).filter(table -> table != null).count();
+    }
+
+    /**
+     * Resolves an address outside RAM to the device region mapped over it.
+     *
+     * @param address the address to resolve
+     * @return the region containing the address
+     * @throws MemoryException if no device is mapped at the address
+     */
+    private Region region(final int address) throws MemoryException {
 
-        ComponentType componentType = whichComponentType(address); // Determine which component to use
-
-        switch (componentType) {
-            case FRAME_BUFFER:
-                // Write to frame buffer if the address corresponds to it
-                final int frameBufferAddress = address - Memory.getMemorySize();
-                if (frameBufferAddress >= 0 && frameBufferAddress <= 3) {
-                    frameBuffer.swap();
-                } else {
-                    frameBuffer.writePixel(frameBufferAddress - 4, value);
-                }
-                break;
-            case MEMORY:
-                // Write to memory if the address corresponds to it
-                memory.writeFromInt(address, value);
-                break;
-            default:
-                throw new RuntimeException("Invalid component type");
+        if (address >= 0) {
+            final int page = address >>> PAGE_SHIFT;
+            final Region[] table = pages[page >>> TABLE_SHIFT];
+            final Region region = table == null ? null : table[page & PAGE_INDEX_MASK];
+            if (region != null && address >= region.base() && address - region.base() < region.size()) {
+                return region;
+            }
         }
+        throw new MemoryException("Invalid address: " + address);
     }
 
     /**
-     * Determines which component type corresponds to a given address.
+     * Loads a zero-extended byte. RAM is accessed directly; devices are word-addressed, so a narrower access
+     * to them reads the whole register and keeps its low byte.
      *
-     * @param address The address to check against known component addresses.
-     * @return The component type associated with the address.
+     * @param address the address to load from
+     * @return the byte at the address, zero-extended
      */
-    public ComponentType whichComponentType(final int address) {
+    public int load8(final int address) {
 
         if (address >= 0 && address < memorySize) {
-            return MEMORY;
-        } else if (address >= memorySize && address <= frameBufferSize + memorySize) {
-            return FRAME_BUFFER;
+            return memory.load8(address);
+        }
+        return loadDevice(address) & 0xFF;
+    }
+
+    /**
+     * Loads a zero-extended halfword.
+     *
+     * @param address the address to load from
+     * @return the halfword at the address, zero-extended
+     */
+    public int load16(final int address) {
+
+        if (address >= 0 && address <= memorySize - 2) {
+            return memory.load16(address);
+        }
+        return loadDevice(address) & 0xFFFF;
+    }
+
+    /**
+     * Loads a word.
+     *
+     * @param address the address to load from
+     * @return the word at the address
+     */
+    public int load32(final int address) {
+
+        if (address >= 0 && address <= memorySize - 4) {
+            return memory.load32(address);
+        }
+        return loadDevice(address);
+    }
+
+    /**
+     * Stores the low byte of a value. A byte store to a device writes the whole register with the byte
+     * zero-extended.
+     *
+     * @param address the address to store to
+     * @param value   the value whose low byte is stored
+     */
+    public void store8(final int address, final int value) {
+
+        if (address >= 0 && address < memorySize) {
+            memory.store8(address, value);
         } else {
-            throw new MemoryException("Invalid address: " + address);
+            storeDevice(address, value & 0xFF);
         }
     }
 
     /**
-     * Reads integer data from the appropriate component based on the address.
+     * Stores the low halfword of a value.
+     *
+     * @param address the address to store to
+     * @param value   the value whose low halfword is stored
+     */
+    public void store16(final int address, final int value) {
+
+        if (address >= 0 && address <= memorySize - 2) {
+            memory.store16(address, value);
+        } else {
+            storeDevice(address, value & 0xFFFF);
+        }
+    }
+
+    /**
+     * Stores a word.
+     *
+     * @param address the address to store to
+     * @param value   the value to store
+     */
+    public void store32(final int address, final int value) {
+
+        if (address >= 0 && address <= memorySize - 4) {
+            memory.store32(address, value);
+        } else {
+            storeDevice(address, value);
+        }
+    }
+
+    /**
+     * Reads one word from the device mapped at an address outside the RAM fast path.
+     *
+     * @param address the address to read from
+     * @return the word read
+     */
+    private int loadDevice(final int address) {
+
+        final Region region = region(address);
+        return region.device().read(address - region.base());
+    }
+
+    /**
+     * Writes one word to the device mapped at an address outside the RAM fast path.
+     *
+     * @param address the address to write to
+     * @param value   the word to write
+     */
+    private void storeDevice(final int address, final int value) {
+
+        final Region region = region(address);
+        region.device().write(address - region.base(), value);
+    }
+
+    /**
+     * Writes integer data to memory, or word by word to the devices mapped at the addresses.
+     *
+     * @param address The starting address for the data.
+     * @param value   The integer array to write.
+     */
+    public void write(final int address, final int[] value) {
+
+        if (address >= 0 && address < memorySize) {
+            memory.writeFromInt(address, value);
+            return;
+        }
+        for (int i = 0; i < value.length; i++) {
+            storeDevice(address + i * 4, value[i]);
+        }
+    }
+
+    /**
+     * Reads integer data from memory, or word by word from the devices mapped at the addresses.
      *
      * @param address         The starting address for reading data.
      * @param endDataPosition The end position for reading data.
-     * @return The integer array read from the component.
+     * @return The integer array read.
      */
-    public int[] read(int address, final int endDataPosition) {
-
-        ComponentType componentType = whichComponentType(address); // Determine which component to read from
-
-        return switch (componentType) {
-            case FRAME_BUFFER:
-                address = address - Memory.getMemorySize() - 4;
-                if (address < 0) {
-                    throw new MemoryException("Invalid address");
-                }
-                yield frameBuffer.readFromPixelBufferAsInts(address, endDataPosition - Memory.getMemorySize() - 4);
-            case MEMORY:
-                yield memory.readAsInt(address, endDataPosition);
-        };
+    public int[] read(final int address, final int endDataPosition) {
+
+        if (address >= 0 && address < memorySize) {
+            return memory.readAsInt(address, endDataPosition);
+        }
+        final int[] words = new int[(endDataPosition - address) / 4];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = loadDevice(address + i * 4);
+        }
+        return words;
     }
+
 }
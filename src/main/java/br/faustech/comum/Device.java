@@ -0,0 +1,25 @@
+package br.faustech.comum;
+
+/**
+ * A memory-mapped device that can be registered on the bus. Devices are word-addressed: the bus hands them
+ * 32-bit reads and writes at offsets from the base address they were registered at.
+ */
+public interface Device {
+
+    /**
+     * Reads a 32-bit word.
+     *
+     * @param offset the offset of the word from the base address of the device
+     * @return the value of the word
+     */
+    int read(int offset);
+
+    /**
+     * Writes a 32-bit word.
+     *
+     * @param offset the offset of the word from the base address of the device
+     * @param value  the value of the word
+     */
+    void write(int offset, int value);
+
+}
@@ -0,0 +1,87 @@
+package br.faustech.cpu;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A straight-line run of decoded instructions that ends at the first instruction which may change control
+ * flow. Blocks remember the blocks that followed them, so dispatch can chain to a successor without a lookup.
+ */
+@Getter
+public class BasicBlock {
+
+    private final int startAddress; // Address of the first instruction in the block
+
+    private final int endAddress; // Address right after the last instruction in the block
+
+    private final int generation; // Block cache generation this block was translated in
+
+    private final DecodedInstruction[] instructions; // The decoded instructions, in program order
+
+    private BasicBlock fallThrough; // Chained successor starting at endAddress
+
+    private BasicBlock branchTarget; // Chained successor last reached through a taken branch or jump
+
+    private int executions; // Number of times the block ran in the interpreter
+
+    @Setter(AccessLevel.PACKAGE)
+    private CompiledBlock compiled; // Bytecode translation of the block, once it became hot
+
+    /**
+     * Constructs a basic block.
+     *
+     * @param startAddress the address of the first instruction
+     * @param generation   the block cache generation the block belongs to
+     * @param instructions the decoded instructions of the block
+     */
+    BasicBlock(final int startAddress, final int generation, final DecodedInstruction[] instructions) {
+
+        this.startAddress = startAddress;
+        this.endAddress = startAddress + instructions.length * 4;
+        this.generation = generation;
+        this.instructions = instructions;
+    }
+
+    /**
+     * Returns the chained successor starting at the given address, if any.
+     *
+     * @param address the address execution continues at
+     * @return the chained block, or null if none is chained for that address
+     */
+    BasicBlock successor(final int address) {
+
+        if (address == endAddress) {
+            return fallThrough;
+        }
+        if (branchTarget != null && branchTarget.startAddress == address) {
+            return branchTarget;
+        }
+        return null;
+    }
+
+    /**
+     * Counts one interpreted execution of the block.
+     *
+     * @return the number of interpreted executions so far
+     */
+    int countExecution() {
+
+        return ++executions;
+    }
+
+    /**
+     * Chains a successor block to this one.
+     *
+     * @param successor the block execution continued into
+     */
+    void chain(final BasicBlock successor) {
+
+        if (successor.startAddress == endAddress) {
+            fallThrough = successor;
+        } else {
+            branchTarget = successor;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package br.faustech.cpu;
+
+import br.faustech.bus.Bus;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Translates and caches basic blocks indexed by start address / 4 over the RAM region. A write to any word
+ * that belongs to a translated block flushes the whole cache and bumps its generation, which also breaks
+ * every chain between blocks translated before the flush. Like the {@link DecodeCache}, it only covers the
+ * first {@link DecodeCache#MAX_CODE_SIZE} bytes of RAM and allocates its tables per page of code.
+ */
+public class BlockCache {
+
+    private static final int MAX_BLOCK_LENGTH = 64; // Upper bound on block length, and so on interrupt latency
+
+    private final Bus bus; // The bus used to fetch instructions
+
+    private final int words; // Number of RAM words the cache covers
+
+    private final BasicBlock[][] blocks; // Translated block per start word, per page blocks start in
+
+    private final boolean[][] code; // Whether a RAM word belongs to any translated block, per page of code
+
+    @Getter
+    private int generation; // Incremented on every flush
+
+    @Getter
+    private long translations; // Number of blocks translated
+
+    @Getter
+    private long flushes; // Number of flushes caused by writes to translated code
+
+    /**
+     * Constructs a block cache covering the memory attached to the given bus.
+     *
+     * @param bus the bus used to fetch instructions
+     */
+    public BlockCache(final Bus bus) {
+
+        this.bus = bus;
+        this.words = Math.min(bus.getMemory().getMemorySize(), DecodeCache.MAX_CODE_SIZE) / 4;
+        this.blocks = new BasicBlock[(words + DecodeCache.WORD_MASK) >>> DecodeCache.PAGE_WORDS_SHIFT][];
+        this.code = new boolean[blocks.length][];
+        bus.getMemory().addWriteListener(this::invalidate);
+    }
+
+    /**
+     * Returns the block starting at the given address, translating it on a miss.
+     *
+     * @param address the address of the first instruction
+     * @return the block, or null if the address is unaligned or outside the cached region
+     */
+    public BasicBlock lookup(final int address) {
+
+        final int index = address >>> 2;
+        if ((address & 0x3) != 0 || index >= words) {
+            return null;
+        }
+
+        final int page = index >>> DecodeCache.PAGE_WORDS_SHIFT;
+        BasicBlock[] pageBlocks = blocks[page];
+        if (pageBlocks == null) {
+            pageBlocks = new BasicBlock[DecodeCache.PAGE_WORDS];
+            blocks[page] = pageBlocks;
+        }
+        BasicBlock block = pageBlocks[index & DecodeCache.WORD_MASK];
+        if (block == null) {
+            block = translate(address);
+            pageBlocks[index & DecodeCache.WORD_MASK] = block;
+        }
+        return block;
+    }
+
+    /**
+     * Decodes instructions from the given address up to and including the first one that ends a block.
+     *
+     * @param address the address of the first instruction
+     * @return the translated block
+     */
+    private BasicBlock translate(final int address) {
+
+        final int first = address >>> 2;
+        final int last = Math.min(first + MAX_BLOCK_LENGTH, words);
+        int length = 0;
+        DecodedInstruction[] instructions = new DecodedInstruction[last - first];
+        for (int index = first; index < last; index++) {
+            DecodedInstruction instruction = Decoder.decode(bus.load32(index << 2));
+            instructions[length++] = instruction;
+            markCode(index);
+            if (instruction.getOpcode().endsBasicBlock()) {
+                break;
+            }
+        }
+
+        translations++;
+        return new BasicBlock(address, generation, Arrays.copyOf(instructions, length));
+    }
+
+    /**
+     * Records that a RAM word belongs to a translated block.
+     *
+     * @param index the index of the word
+     */
+    private void markCode(final int index) {
+
+        final int page = index >>> DecodeCache.PAGE_WORDS_SHIFT;
+        boolean[] pageCode = code[page];
+        if (pageCode == null) {
+            pageCode = new boolean[DecodeCache.PAGE_WORDS];
+            code[page] = pageCode;
+        }
+        pageCode[index & DecodeCache.WORD_MASK] = true;
+    }
+
+    /**
+     * Flushes the cache if the given address range overlaps any translated block.
+     *
+     * @param beginAddress the first address written (inclusive)
+     * @param endAddress   the last address written (exclusive)
+     */
+    public void invalidate(final int beginAddress, final int endAddress) {
+
+        if (endAddress <= beginAddress || endAddress <= 0) {
+            return;
+        }
+
+        final int first = Math.max(beginAddress, 0) >>> 2;
+        final int last = Math.min((endAddress - 1) >>> 2, words - 1);
+        for (int i = first; i <= last; ) {
+            final int end = Math.min(last, i | DecodeCache.WORD_MASK); // Last word of the range within the page of i
+            final boolean[] pageCode = code[i >>> DecodeCache.PAGE_WORDS_SHIFT];
+            if (pageCode != null) {
+                for (int word = i & DecodeCache.WORD_MASK; word <= (end & DecodeCache.WORD_MASK); word++) {
+                    if (pageCode[word]) {
+                        flush();
+                        return;
+                    }
+                }
+            }
+            i = end + 1;
+        }
+    }
+
+    /**
+     * Drops every translated block. The pages stay allocated for the blocks translated next.
+     */
+    public void flush() {
+
+        for (int page = 0; page < blocks.length; page++) {
+            if (blocks[page] != null) {
+                Arrays.fill(blocks[page], null);
+            }
+            if (code[page] != null) {
+                Arrays.fill(code[page], false);
+            }
+        }
+        generation++;
+        flushes++;
+    }
+
+}
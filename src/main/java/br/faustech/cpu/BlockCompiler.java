@@ -0,0 +1,483 @@
+package br.faustech.cpu;
+
+import br.faustech.memory.MemoryException;
+import lombok.Getter;
+import lombok.extern.java.Log;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates hot basic blocks into hidden classes implementing {@link CompiledBlock}, so the JVM's JIT can
+ * compile guest code directly instead of going through the interpreter's dispatch. Guest registers live in
+ * JVM locals while the block runs and are written back to the register file only at exits, including a load or
+ * store that faults, so the CPU is left in the same state as after the interpreter faults on it.
+ */
+@Log
+public class BlockCompiler {
+
+    private static final String RUNTIME = Type.getInternalName(JitRuntime.class);
+
+    private static final String MEMORY_EXCEPTION = Type.getInternalName(MemoryException.class);
+
+    private static final int REGISTERS = 1; // Local slot of the register file parameter
+
+    private static final int CONTEXT = 2; // Local slot of the runtime parameter
+
+    private static final int ADDRESS = 34; // Local slot for a computed jump target, after the 31 register locals
+
+    private static final int FAULT = 35; // Local slot for the exception of a faulting load or store
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    @Getter
+    private final int threshold; // Number of interpreted executions before a block is compiled
+
+    @Getter
+    private long compilations; // Number of blocks compiled
+
+    /**
+     * Constructs a block compiler.
+     *
+     * @param threshold the number of interpreted executions before a block is compiled
+     */
+    public BlockCompiler(final int threshold) {
+
+        this.threshold = threshold;
+    }
+
+    /**
+     * The handler of a load or store that may fault, generated after the body of the block.
+     *
+     * @param handler the label the handler is generated at
+     * @param address the address of the load or store
+     * @param retired the number of instructions retired once the load or store completes
+     */
+    private record FaultHandler(Label handler, int address, int retired) {
+
+    }
+
+    /**
+     * Tells whether the compiler can translate an operation. System, CSR and unknown instructions are left
+     * to the interpreter.
+     *
+     * @param opcode the operation
+     * @return true if the operation can be compiled
+     */
+    public static boolean isCompilable(final Opcode opcode) {
+
+        return switch (opcode) {
+            case ECALL, EBREAK, MRET, CSRRW, CSRRS, CSRRC, CSRRWI, CSRRSI, CSRRCI, UNKNOWN -> false;
+            default -> true;
+        };
+    }
+
+    /**
+     * Returns the local slot holding a guest register, which is the register index shifted past the parameters.
+     *
+     * @param register the guest register index, 1 to 31
+     * @return the local slot holding the register
+     */
+    private static int local(final int register) {
+
+        return CONTEXT + register;
+    }
+
+    /**
+     * Compiles the leading compilable instructions of a block.
+     *
+     * @param block the block to compile
+     * @return the compiled block, or null if the block starts with an instruction left to the interpreter
+     */
+    public CompiledBlock compile(final BasicBlock block) {
+
+        final DecodedInstruction[] instructions = block.getInstructions();
+        int length = 0;
+        while (length < instructions.length && isCompilable(instructions[length].getOpcode())) {
+            length++;
+        }
+        if (length == 0) {
+            return null;
+        }
+
+        try {
+            final byte[] bytes = generate(block, length);
+            final Class<?> compiled = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+            compilations++;
+            return (CompiledBlock) compiled.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warning(String.format("Failed to compile block at %d: %s", block.getStartAddress(), e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Generates the class file of a compiled block.
+     *
+     * @param block  the block to compile
+     * @param length the number of leading instructions to compile
+     * @return the class file bytes
+     */
+    private byte[] generate(final BasicBlock block, final int length) {
+
+        final DecodedInstruction[] instructions = block.getInstructions();
+        final boolean[] used = new boolean[32];
+        final boolean[] written = new boolean[32];
+        for (int i = 0; i < length; i++) {
+            DecodedInstruction instruction = instructions[i];
+            used[instruction.getRs1()] = true;
+            used[instruction.getRs2()] = true;
+            used[instruction.getRd()] = true;
+            written[instruction.getRd()] = true;
+        }
+
+        final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        final String name = Type.getInternalName(BlockCompiler.class) + "$Block" + Integer.toHexString(block.getStartAddress());
+        classWriter.visit(Opcodes.V21, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, null,
+                "java/lang/Object", new String[]{Type.getInternalName(CompiledBlock.class)});
+
+        MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "execute",
+                "([I" + Type.getDescriptor(JitRuntime.class) + ")I", null, null);
+        method.visitCode();
+
+        // Load every register the block touches into its local
+        for (int register = 1; register < 32; register++) {
+            if (used[register]) {
+                method.visitVarInsn(Opcodes.ALOAD, REGISTERS);
+                pushConstant(method, register);
+                method.visitInsn(Opcodes.IALOAD);
+                method.visitVarInsn(Opcodes.ISTORE, local(register));
+            }
+        }
+
+        int address = block.getStartAddress();
+        boolean exited = false;
+        final List<FaultHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < length; i++, address += 4) {
+            exited = generateInstruction(method, instructions[i], address, written, i + 1, handlers);
+        }
+        if (!exited) {
+            generateExit(method, written, address, length);
+        }
+        for (FaultHandler handler : handlers) {
+            generateFaultHandler(method, handler, written);
+        }
+
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Generates the bytecode of a single instruction.
+     *
+     * @param method      the method being generated
+     * @param instruction the instruction to translate
+     * @param address     the address of the instruction
+     * @param written     the registers written by the block
+     * @param retired     the number of instructions retired once this one completes
+     * @param handlers    the fault handlers to generate after the block, added to for loads and stores
+     * @return true if the instruction always exits the block
+     */
+    private boolean generateInstruction(final MethodVisitor method, final DecodedInstruction instruction,
+                                        final int address, final boolean[] written, final int retired,
+                                        final List<FaultHandler> handlers) {
+
+        final int rd = instruction.getRd();
+        final int rs1 = instruction.getRs1();
+        final int rs2 = instruction.getRs2();
+        final int imm = instruction.getImm();
+
+        switch (instruction.getOpcode()) {
+            case ADD -> generateRType(method, rd, rs1, rs2, Opcodes.IADD);
+            case SUB -> generateRType(method, rd, rs1, rs2, Opcodes.ISUB);
+            case SLL -> generateRType(method, rd, rs1, rs2, Opcodes.ISHL);
+            case XOR -> generateRType(method, rd, rs1, rs2, Opcodes.IXOR);
+            case SRL -> generateRType(method, rd, rs1, rs2, Opcodes.IUSHR);
+            case SRA -> generateRType(method, rd, rs1, rs2, Opcodes.ISHR);
+            case OR -> generateRType(method, rd, rs1, rs2, Opcodes.IOR);
+            case AND -> generateRType(method, rd, rs1, rs2, Opcodes.IAND);
+            case SLT -> generateCompare(method, rd, rs1, rs2, false, 0, "lessThan");
+            case SLTU -> generateCompare(method, rd, rs1, rs2, false, 0, "lessThanUnsigned");
+            case ADDI -> generateIType(method, rd, rs1, imm, Opcodes.IADD);
+            case XORI -> generateIType(method, rd, rs1, imm, Opcodes.IXOR);
+            case ORI -> generateIType(method, rd, rs1, imm, Opcodes.IOR);
+            case ANDI -> generateIType(method, rd, rs1, imm, Opcodes.IAND);
+            case SLLI -> generateIType(method, rd, rs1, imm, Opcodes.ISHL);
+            case SRLI -> generateIType(method, rd, rs1, imm, Opcodes.IUSHR);
+            case SRAI -> generateIType(method, rd, rs1, imm, Opcodes.ISHR);
+            case SLTI -> generateCompare(method, rd, rs1, 0, true, imm, "lessThan");
+            case SLTIU -> generateCompare(method, rd, rs1, 0, true, imm, "lessThanUnsigned");
+            case LUI -> {
+                pushConstant(method, imm);
+                storeRegister(method, rd);
+            }
+            case AUIPC -> {
+                pushConstant(method, imm + address);
+                storeRegister(method, rd);
+            }
+            case LB, LH, LW, LBU, LHU -> generateLoad(method, instruction, address, retired, handlers);
+            case SB, SH, SW -> generateStore(method, instruction, address, written, retired, handlers);
+            case BEQ -> generateBranch(method, instruction, address, written, retired, Opcodes.IF_ICMPEQ, false);
+            case BNE -> generateBranch(method, instruction, address, written, retired, Opcodes.IF_ICMPNE, false);
+            case BLT -> generateBranch(method, instruction, address, written, retired, Opcodes.IF_ICMPLT, false);
+            case BGE -> generateBranch(method, instruction, address, written, retired, Opcodes.IF_ICMPGE, false);
+            case BLTU -> generateBranch(method, instruction, address, written, retired, Opcodes.IFLT, true);
+            case BGEU -> generateBranch(method, instruction, address, written, retired, Opcodes.IFGE, true);
+            case JAL -> {
+                pushConstant(method, address + 4);
+                storeRegister(method, rd);
+                generateExit(method, written, address + imm, retired);
+                return true;
+            }
+            case JALR -> {
+                loadRegister(method, rs1);
+                pushConstant(method, imm);
+                method.visitInsn(Opcodes.IADD);
+                pushConstant(method, ~1);
+                method.visitInsn(Opcodes.IAND);
+                method.visitVarInsn(Opcodes.ISTORE, ADDRESS);
+                pushConstant(method, address + 4);
+                storeRegister(method, rd);
+                generateWriteBack(method, written, retired);
+                method.visitVarInsn(Opcodes.ILOAD, ADDRESS);
+                method.visitInsn(Opcodes.IRETURN);
+                return true;
+            }
+            default -> throw new IllegalArgumentException("Cannot compile " + instruction.getOpcode());
+        }
+        return false;
+    }
+
+    /**
+     * Generates a register-register ALU operation.
+     */
+    private void generateRType(final MethodVisitor method, final int rd, final int rs1, final int rs2, final int operation) {
+
+        loadRegister(method, rs1);
+        loadRegister(method, rs2);
+        method.visitInsn(operation);
+        storeRegister(method, rd);
+    }
+
+    /**
+     * Generates a register-immediate ALU operation.
+     */
+    private void generateIType(final MethodVisitor method, final int rd, final int rs1, final int imm, final int operation) {
+
+        loadRegister(method, rs1);
+        pushConstant(method, imm);
+        method.visitInsn(operation);
+        storeRegister(method, rd);
+    }
+
+    /**
+     * Generates a set-less-than through one of the {@link JitRuntime} helpers.
+     */
+    private void generateCompare(final MethodVisitor method, final int rd, final int rs1, final int rs2,
+                                 final boolean immediate, final int imm, final String helper) {
+
+        loadRegister(method, rs1);
+        if (immediate) {
+            pushConstant(method, imm);
+        } else {
+            loadRegister(method, rs2);
+        }
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, RUNTIME, helper, "(II)I", false);
+        storeRegister(method, rd);
+    }
+
+    /**
+     * Generates a load of the instruction's width, sign-extending lb and lh the same way the interpreter does.
+     */
+    private void generateLoad(final MethodVisitor method, final DecodedInstruction instruction, final int address,
+                              final int retired, final List<FaultHandler> handlers) {
+
+        method.visitVarInsn(Opcodes.ALOAD, CONTEXT);
+        loadRegister(method, instruction.getRs1());
+        pushConstant(method, instruction.getImm());
+        method.visitInsn(Opcodes.IADD);
+        final String helper = switch (instruction.getOpcode()) {
+            case LB, LBU -> "load8";
+            case LH, LHU -> "load16";
+            default -> "load32";
+        };
+        generateFaultingCall(method, helper, "(I)I", address, retired, handlers);
+        switch (instruction.getOpcode()) {
+            case LB -> method.visitInsn(Opcodes.I2B);
+            case LH -> method.visitInsn(Opcodes.I2S);
+            default -> {
+            }
+        }
+        storeRegister(method, instruction.getRd());
+    }
+
+    /**
+     * Generates a store, exiting the block if the store overwrote translated code.
+     */
+    private void generateStore(final MethodVisitor method, final DecodedInstruction instruction, final int address,
+                               final boolean[] written, final int retired, final List<FaultHandler> handlers) {
+
+        method.visitVarInsn(Opcodes.ALOAD, CONTEXT);
+        loadRegister(method, instruction.getRs1());
+        pushConstant(method, instruction.getImm());
+        method.visitInsn(Opcodes.IADD);
+        loadRegister(method, instruction.getRs2());
+        final String helper = switch (instruction.getOpcode()) {
+            case SB -> "store8";
+            case SH -> "store16";
+            default -> "store32";
+        };
+        generateFaultingCall(method, helper, "(II)Z", address, retired, handlers);
+
+        Label resume = new Label();
+        method.visitJumpInsn(Opcodes.IFEQ, resume);
+        generateExit(method, written, address + 4, retired);
+        method.visitLabel(resume);
+    }
+
+    /**
+     * Generates a call to a {@link JitRuntime} load or store helper inside a try range, whose handler is
+     * generated after the block.
+     */
+    private void generateFaultingCall(final MethodVisitor method, final String helper, final String descriptor,
+                                      final int address, final int retired, final List<FaultHandler> handlers) {
+
+        final Label start = new Label();
+        final Label end = new Label();
+        final FaultHandler handler = new FaultHandler(new Label(), address, retired);
+        method.visitTryCatchBlock(start, end, handler.handler(), MEMORY_EXCEPTION);
+        method.visitLabel(start);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RUNTIME, helper, descriptor, false);
+        method.visitLabel(end);
+        handlers.add(handler);
+    }
+
+    /**
+     * Generates the handler of a faulting load or store, which writes back the registers as they were before
+     * the access, records its address and rethrows. Like the interpreter, the faulting instruction counts as
+     * retired.
+     */
+    private void generateFaultHandler(final MethodVisitor method, final FaultHandler handler,
+                                      final boolean[] written) {
+
+        method.visitLabel(handler.handler());
+        method.visitVarInsn(Opcodes.ASTORE, FAULT);
+        generateWriteBack(method, written, handler.retired());
+        method.visitVarInsn(Opcodes.ALOAD, CONTEXT);
+        pushConstant(method, handler.address());
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RUNTIME, "fault", "(I)V", false);
+        method.visitVarInsn(Opcodes.ALOAD, FAULT);
+        method.visitInsn(Opcodes.ATHROW);
+    }
+
+    /**
+     * Generates a conditional branch with an exit on each side.
+     */
+    private void generateBranch(final MethodVisitor method, final DecodedInstruction instruction, final int address,
+                                final boolean[] written, final int retired, final int jump, final boolean unsigned) {
+
+        loadRegister(method, instruction.getRs1());
+        loadRegister(method, instruction.getRs2());
+        if (unsigned) {
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "compareUnsigned", "(II)I", false);
+        }
+
+        Label taken = new Label();
+        method.visitJumpInsn(jump, taken);
+        generateExit(method, written, address + 4, retired);
+        method.visitLabel(taken);
+        generateExit(method, written, address + instruction.getImm(), retired);
+    }
+
+    /**
+     * Generates a block exit to a constant address.
+     */
+    private void generateExit(final MethodVisitor method, final boolean[] written, final int nextAddress,
+                              final int retired) {
+
+        generateWriteBack(method, written, retired);
+        pushConstant(method, nextAddress);
+        method.visitInsn(Opcodes.IRETURN);
+    }
+
+    /**
+     * Writes every register written by the block back to the register file, keeps r0 at zero and counts the
+     * retired instructions.
+     */
+    private void generateWriteBack(final MethodVisitor method, final boolean[] written, final int retired) {
+
+        method.visitVarInsn(Opcodes.ALOAD, CONTEXT);
+        pushConstant(method, retired);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RUNTIME, "retire", "(I)V", false);
+
+        for (int register = 1; register < 32; register++) {
+            if (written[register]) {
+                method.visitVarInsn(Opcodes.ALOAD, REGISTERS);
+                pushConstant(method, register);
+                method.visitVarInsn(Opcodes.ILOAD, local(register));
+                method.visitInsn(Opcodes.IASTORE);
+            }
+        }
+        method.visitVarInsn(Opcodes.ALOAD, REGISTERS);
+        method.visitInsn(Opcodes.ICONST_0);
+        method.visitInsn(Opcodes.ICONST_0);
+        method.visitInsn(Opcodes.IASTORE);
+    }
+
+    /**
+     * Pushes a guest register, reading r0 as the constant zero.
+     */
+    private void loadRegister(final MethodVisitor method, final int register) {
+
+        if (register == 0) {
+            method.visitInsn(Opcodes.ICONST_0);
+        } else {
+            method.visitVarInsn(Opcodes.ILOAD, local(register));
+        }
+    }
+
+    /**
+     * Pops the top of the stack into a guest register.
+     */
+    private void storeRegister(final MethodVisitor method, final int register) {
+
+        if (register == 0) {
+            method.visitInsn(Opcodes.POP); // Writes to r0 are discarded
+        } else {
+            method.visitVarInsn(Opcodes.ISTORE, local(register));
+        }
+    }
+
+    /**
+     * Pushes an int constant using the shortest instruction for it.
+     */
+    private void pushConstant(final MethodVisitor method, final int value) {
+
+        if (value >= -1 && value <= 5) {
+            method.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            method.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            method.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+}
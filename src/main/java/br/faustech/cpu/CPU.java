@@ -2,12 +2,11 @@ package br.faustech.cpu;
 
 import br.faustech.Main;
 import br.faustech.bus.Bus;
-import br.faustech.memory.Memory;
 import br.faustech.memory.MemoryException;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.java.Log;
 
-import java.util.function.BiFunction;
-
 /**
  * CPU class that extends Thread to simulate a CPU execution environment. This class
  * handles the initialization of registers, the program counter, and executes instructions fetched
@@ -22,10 +21,28 @@ public class CPU extends CPUInterrupt {
     private static final int MCAUSE = 834;              // CSR register
     private static final int MTVAL = 835;               // CSR register
     private static final int MIP = 836;                 // CSR register
+    private static final int KEY_POLL_INTERVAL = 1024;  // Instructions between checks for key presses and wall-clock timer
     private final int[] registers = new int[32];        // 32 general-purpose registers
     private final int[] csrRegisters = new int[4096];   // CSR registers
     private final Bus bus;                              // The bus to be used by the CPU for memory access
+    private final DecodedInstruction decodedInstruction = new DecodedInstruction(); // Decode target for executeInstruction(int)
+    @Getter
+    private final DecodeCache decodeCache;              // Decoded instructions indexed by PC / 4
+    @Getter
+    private final BlockCache blockCache;                // Translated basic blocks indexed by start address / 4
+    @Getter
+    @Setter
     private int programCounter = 0;                     // The program counter to keep track of the current instruction
+    private long instructionCount = 0;                  // Number of instructions retired by the interpreter
+    private long nextInterruptCheck = 0;                // Instruction count at which interrupts are next evaluated
+    @Setter
+    private boolean blockExecution = false;             // Whether run() executes whole basic blocks at a time
+    private BasicBlock previousBlock;                   // Last block executed, used to chain to its successor
+    @Getter
+    private BlockCompiler blockCompiler;                // Compiles hot blocks to bytecode, null when disabled
+    private JitRuntime jitRuntime;                      // Memory helpers used by compiled blocks
+    @Setter
+    private Runnable ebreakListener;                    // Notified before ebreak stops the CPU, e.g. to close the window
 
     /**
      * Constructs a CPU with a specified bus.
@@ -33,38 +50,13 @@ public class CPU extends CPUInterrupt {
      * @param bus the bus to be used by the CPU
      */
     public CPU(final Bus bus) {
-        initializeRegisters();
+        super(bus.getClint());
         this.bus = bus;
-    }
-
-    /**
-     * Retrieves the index of a register from the instruction parts.
-     *
-     * @param parts     the instruction parts
-     * @param partIndex the index of the part to retrieve the register index from
-     * @return the register index
-     */
-    private static int getRegisterIndex(String[] parts, int partIndex) {
-        try {
-            return Integer.parseInt(parts[partIndex].split("=")[1].replace(",", ""));
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("Invalid register index in part: %s", parts[partIndex]));
-        }
-    }
-
-    /**
-     * Retrieves the immediate value from the instruction parts.
-     *
-     * @param parts     the instruction parts
-     * @param partIndex the index of the part to retrieve the immediate value from
-     * @return the immediate value
-     */
-    private static int getImmediateValue(String[] parts, int partIndex) {
-        try {
-            return Integer.parseInt(parts[partIndex].split("=")[1].replace(",", ""));
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("Invalid immediate value in part: %s", parts[partIndex]));
-        }
+        initializeRegisters();
+        this.decodeCache = new DecodeCache(bus);
+        this.blockCache = new BlockCache(bus);
+        clint.setInstructionCounter(this::getInstructionCount);
+        clint.setWriteListener(() -> nextInterruptCheck = 0);
     }
 
     /**
@@ -86,14 +78,26 @@ public class CPU extends CPUInterrupt {
         return immediate;
     }
 
+    /**
+     * Enables block execution with hot blocks compiled to JVM bytecode.
+     *
+     * @param threshold the number of interpreted executions before a block is compiled
+     */
+    public void enableCompilation(final int threshold) {
+
+        this.blockExecution = true;
+        this.blockCompiler = new BlockCompiler(threshold);
+        this.jitRuntime = new JitRuntime(bus, blockCache);
+    }
+
     /**
      * Initializes the CPU registers with predefined values.
      */
     private void initializeRegisters() {
         // Stack Pointer (sp) to the top of the memory
-        registers[2] = Memory.getMemorySize() - 4;
+        registers[2] = bus.getMemory().getMemorySize() - 4;
         // Global Pointer (gp) to some midpoint in memory, e.g., for global data
-        registers[3] = Memory.getMemorySize() / 2;
+        registers[3] = bus.getMemory().getMemorySize() / 2;
         // Thread Pointer (tp) to some specific address for thread-local data
         // Frame Pointer (fp) to the start of the stack
         registers[8] = registers[2];
@@ -104,440 +108,393 @@ public class CPU extends CPUInterrupt {
      */
     @Override
     public void run() {
-        setStartTime();
+        clint.rearm();
         while (!isInterrupted()) {
-            processNextInstruction();
+            if (blockExecution) {
+                processNextBlock();
+            } else {
+                processNextInstruction();
+            }
         }
     }
 
-    private void setCsrRegister(int index, int value) {
-        csrRegisters[index] = value;
-    }
-
     /**
-     * Calls the interruption table when an interruption occurs.
+     * Runs the CPU on the calling thread until the program executes ebreak or ecall, or until one of the
+     * budgets is used up. The budgets are checked between steps, so in block execution they may be exceeded
+     * by up to one block.
+     *
+     * @param maxInstructions the maximum number of instructions to retire
+     * @param timeoutMillis   the maximum wall time to run for, in milliseconds
+     * @return the reason the run stopped
      */
-    private void interruptHandler() {
-
-        csrRegisters[MEPC] = programCounter;
-        setCsrRegister(MIP, 1);
-        if (csrRegisters[MCAUSE] >= 2) {
-            setCsrRegister(MTVAL, csrRegisters[MCAUSE] - 2); // MTVAL has the value of the key pressed
-            setCsrRegister(MCAUSE, 2);// MCAUSE has the value that was a key interrupt
-        }
-        //Set the program counter to the interrupt table position accordingly to the interrupt cause.
-        programCounter = csrRegisters[MTVEC] + 4 * (csrRegisters[MCAUSE] - 1);
-        setCsrRegister(MCAUSE, 0);
-    }
+    public ExitReason runUntilExit(final long maxInstructions, final long timeoutMillis) {
 
-    /**
-     * Fetches the next instruction from memory and executes it.
-     */
-    public void processNextInstruction() {
-        // Set the pc to the first memory position and start reading 4 bytes instruction and sending them to execution
+        final long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        clint.rearm();
         try {
-            if (csrRegisters[MIE] == 1 && csrRegisters[MIP] == 0) {
-                isInterruptEnabled = true;
-                setCsrRegister(MCAUSE, checkInterruption());
-                if (csrRegisters[MCAUSE] != 0) {
-                    interruptHandler();
+            for (long steps = 0; ; steps++) {
+                if (getInstructionCount() >= maxInstructions) {
+                    return ExitReason.INSTRUCTION_LIMIT;
+                }
+                if ((steps & 0x3FF) == 0 && System.nanoTime() - deadline >= 0) {
+                    return ExitReason.TIMEOUT;
+                }
+                if (blockExecution) {
+                    processNextBlock();
+                } else {
+                    processNextInstruction();
                 }
             }
-            int instruction = bus.read(programCounter, programCounter + 4)[0];
-            executeInstruction(instruction);
-        } catch (MemoryException e) {
-            throw new RuntimeException(e);
+        } catch (EbreakException e) {
+            return ExitReason.EBREAK;
+        } catch (EcallException e) {
+            return ExitReason.ECALL;
         }
     }
 
     /**
-     * Decodes and executes a given instruction.
+     * Returns the number of instructions retired so far, interpreted or compiled.
      *
-     * @param instruction the instruction to be executed
-     * @throws MemoryException if there is an error accessing memory
+     * @return the number of retired instructions
      */
-    public void executeInstruction(int instruction) throws MemoryException {
-        registers[0] = 0;   // r0 is always zero
-        String decodedInstruction = Decoder.decodeInstruction(instruction);
-        String[] parts = decodedInstruction.split(" ");// Parse the decoded instruction
-        String operation = parts[0];
-        programCounter += 4; // Increment PC for next instruction, by default
-        switch (operation) {
-            case "add":
-                executeRType(parts, Integer::sum);
-                break;
-            case "sub":
-                executeRType(parts, (a, b) -> a - b);
-                break;
-            case "sll":
-                executeRType(parts, (a, b) -> a << b);
-                break;
-            case "slt":
-                executeRType(parts, (a, b) -> a < b ? 1 : 0);
-                break;
-            case "sltu":
-                executeRType(parts, (a, b) -> Integer.compareUnsigned(a, b) < 0 ? 1 : 0);
-                break;
-            case "xor":
-                executeRType(parts, (a, b) -> a ^ b);
-                break;
-            case "srl":
-                executeRType(parts, (a, b) -> a >>> b);
-                break;
-            case "sra":
-                executeRType(parts, (a, b) -> a >> b);
-                break;
-            case "or":
-                executeRType(parts, (a, b) -> a | b);
-                break;
-            case "and":
-                executeRType(parts, (a, b) -> a & b);
-                break;
-            case "lui":
-            case "auipc":
-                executeUType(parts);
-                break;
-            case "jal":
-                executeJType(parts);
-                break;
-            case "jalr":
-                executeITypeJumpAndLinkRegister(parts);
-                break;
-            case "lb":
-            case "lh":
-            case "lw":
-            case "lbu":
-            case "lhu":
-                executeITypeLoad(parts);
-                break;
-            case "beq":
-            case "bne":
-            case "blt":
-            case "bge":
-            case "bltu":
-            case "bgeu":
-                executeBType(parts);
-                break;
-            case "sb":
-            case "sh":
-            case "sw":
-                executeSType(parts);
-                break;
-            case "addi":
-            case "slti":
-            case "sltiu":
-            case "xori":
-            case "ori":
-            case "andi":
-            case "slli":
-            case "srli":
-            case "srai":
-                executeITypeImmediate(parts);
-                break;
-            case "ecall":
-            case "ebreak":
-            case "mret":
-                executeEType(parts);
-                break;
-            case "csrrw":
-            case "csrrs":
-            case "csrrc":
-            case "csrrwi":
-            case "csrrsi":
-            case "csrrci":
-                executeITypeControlStatusRegister(parts);
-                break;
-            default:
-                programCounter -= 4; // Revert PC increment if the operation is unknown
-                throw new RuntimeException(String.format("Unknown operation: %s", operation));
-        }
+    public long getInstructionCount() {
+
+        return jitRuntime == null ? instructionCount : instructionCount + jitRuntime.getRetired();
     }
 
     /**
-     * Executes R-Type instructions which involve register-to-register operations.
+     * Returns a copy of the general-purpose register file.
      *
-     * @param parts     the instruction parts
-     * @param operation the operation to be performed
+     * @return the values of registers x0 to x31
      */
-    private void executeRType(String[] parts, BiFunction<Integer, Integer, Integer> operation) {
-
-        int rd = getRegisterIndex(parts, 1);
-        int rs1 = getRegisterIndex(parts, 2);
-        int rs2 = getRegisterIndex(parts, 3);
-
-        // Access the values in registers rs1 and rs2
-        int value1 = registers[rs1];
-        int value2 = registers[rs2];
-
-        // Perform the operation and store the result in register rd
-        registers[rd] = operation.apply(value1, value2);
+    public int[] getRegisters() {
 
-        Main.info(String.format("Executing: %s rs1=%d rs2=%d -> rd=%d", parts[0], rs1, rs2, rd));
+        return registers.clone();
     }
 
     /**
-     * Executes U-Type instructions which involve immediate values.
+     * Sets a general-purpose register, e.g. to pass arguments to a program before running it. Writes to x0
+     * are ignored.
      *
-     * @param parts the instruction parts
+     * @param index the register index
+     * @param value the value to set
      */
-    private void executeUType(String[] parts) {
+    public void setRegister(final int index, final int value) {
 
-        int rd = getRegisterIndex(parts, 1);
-        int imm = getImmediateValue(parts, 2) << 12;
-
-        switch (parts[0]) {
-            case "lui":
-                registers[rd] = imm;
-                break;
-            case "auipc":
-                programCounter -= 4; // Adjust for the default increment
-                registers[rd] = imm + programCounter;
-                programCounter += 4;
-                break;
+        if (index != 0) {
+            registers[index] = value;
         }
+    }
 
-        Main.info(String.format("Executing: %s imm=%d -> rd=%d", parts[0], imm, rd));
+    private void setCsrRegister(int index, int value) {
+        csrRegisters[index] = value;
     }
 
     /**
-     * Executes J-Type instructions which involve jump operations.
-     *
-     * @param parts the instruction parts
+     * Calls the interruption table when an interruption occurs.
      */
-    private void executeJType(String[] parts) {
+    private void interruptHandler() {
 
-        int rd = getRegisterIndex(parts, 1);
-        int imm = getImmediateValue(parts, 2);
-        imm = signExtendImmediate(imm, 20);
-        registers[rd] = programCounter;
-        programCounter += imm - 4; // Adjust for the default increment
+        csrRegisters[MEPC] = programCounter;
+        setCsrRegister(MIP, 1);
+        if (csrRegisters[MCAUSE] >= 2) {
+            setCsrRegister(MTVAL, csrRegisters[MCAUSE] - 2); // MTVAL has the value of the key pressed
+            setCsrRegister(MCAUSE, 2);// MCAUSE has the value that was a key interrupt
+        }
+        //Set the program counter to the interrupt table position accordingly to the interrupt cause.
+        programCounter = csrRegisters[MTVEC] + 4 * (csrRegisters[MCAUSE] - 1);
+        setCsrRegister(MCAUSE, 0);
+    }
 
-        Main.info(String.format("Executing: %s imm=%d -> rd=%d PC=%d", parts[0], imm, rd, programCounter));
+    /**
+     * Checks for a pending interruption and jumps to its handler if there is one, then schedules the next
+     * check. When the timer is driven by retired instructions the next check lands exactly on the timer
+     * deadline; otherwise the timer and key presses are polled every {@link #KEY_POLL_INTERVAL} instructions.
+     * While interrupts are disabled or being handled, only CSR writes, mret and timer writes trigger a check.
+     */
+    private void checkInterrupts() {
+
+        if (csrRegisters[MIE] == 1 && csrRegisters[MIP] == 0) {
+            isInterruptEnabled = true;
+            setCsrRegister(MCAUSE, checkInterruption());
+            if (csrRegisters[MCAUSE] != 0) {
+                interruptHandler();
+                nextInterruptCheck = Long.MAX_VALUE;
+            } else {
+                nextInterruptCheck = getInstructionCount()
+                        + Math.min(clint.instructionsUntilPending(), KEY_POLL_INTERVAL);
+            }
+        } else {
+            nextInterruptCheck = Long.MAX_VALUE;
+        }
     }
 
     /**
-     * Executes I-Type jump and link register instructions.
-     *
-     * @param parts the instruction parts
+     * Fetches the next instruction from memory and executes it.
+     */
+    public void processNextInstruction() {
+        // Set the pc to the first memory position and start reading 4 bytes instruction and sending them to execution
+        try {
+            if (getInstructionCount() >= nextInterruptCheck) {
+                checkInterrupts();
+            }
+            executeInstruction(decodeCache.fetch(programCounter));
+        } catch (MemoryException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Executes the basic block at the program counter as a single unit. Interrupts are only checked here, at
+     * block boundaries, so interrupt latency is bounded by the block length.
      */
-    private void executeITypeJumpAndLinkRegister(String[] parts) {
+    public void processNextBlock() {
+
+        try {
+            if (getInstructionCount() >= nextInterruptCheck) {
+                checkInterrupts();
+            }
 
-        int rd = getRegisterIndex(parts, 1);
-        int rs1 = getRegisterIndex(parts, 2);
-        int imm = getImmediateValue(parts, 3);
-        imm = signExtendImmediate(imm, 12);
-        registers[rd] = programCounter;
-        programCounter = (registers[rs1] + imm) & ~1;
+            BasicBlock block = null;
+            if (previousBlock != null && previousBlock.getGeneration() == blockCache.getGeneration()) {
+                block = previousBlock.successor(programCounter);
+            }
+            if (block == null) {
+                block = blockCache.lookup(programCounter);
+                if (block == null) {
+                    // Unaligned or outside RAM: fall back to a single instruction
+                    previousBlock = null;
+                    executeInstruction(decodeCache.fetch(programCounter));
+                    return;
+                }
+                if (previousBlock != null && previousBlock.getGeneration() == block.getGeneration()) {
+                    previousBlock.chain(block);
+                }
+            }
 
-        Main.info(String.format("Executing: %s rs1=%d imm=%d -> rd=%d PC=%d", parts[0], rs1, imm, rd, programCounter));
+            previousBlock = block;
+            executeBlock(block);
+        } catch (MemoryException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
-     * Executes I-Type load instructions which involve memory load operations.
+     * Executes every instruction of a block, stopping early if a store overwrote translated code. Once a block
+     * has run often enough it is compiled, and from then on its compiled form runs instead (without logging).
      *
-     * @param parts the instruction parts
+     * @param block the block to execute
      * @throws MemoryException if there is an error accessing memory
      */
-    private void executeITypeLoad(String[] parts) throws MemoryException {
-
-        int rd = getRegisterIndex(parts, 1);
-        int rs1 = getRegisterIndex(parts, 2);
-        int imm = getImmediateValue(parts, 3);
-        imm = signExtendImmediate(imm, 12);
-        int address = registers[rs1] + imm;
-
-        if (address < 0) {
-            throw new MemoryException(String.format("Memory access out of bounds: %d", address));
+    private void executeBlock(BasicBlock block) throws MemoryException {
+
+        final int generation = block.getGeneration();
+        if (blockCompiler != null) {
+            CompiledBlock compiled = block.getCompiled();
+            if (compiled == null && block.countExecution() == blockCompiler.getThreshold()) {
+                compiled = blockCompiler.compile(block);
+                block.setCompiled(compiled);
+            }
+            if (compiled != null) {
+                try {
+                    programCounter = compiled.execute(registers, jitRuntime);
+                } catch (MemoryException e) {
+                    // The block wrote back the registers and the retired count up to the faulting instruction
+                    programCounter = jitRuntime.getFaultAddress();
+                    throw e;
+                }
+                // A trailing system or CSR instruction is left to the interpreter
+                final DecodedInstruction[] instructions = block.getInstructions();
+                final DecodedInstruction last = instructions[instructions.length - 1];
+                if (blockCache.getGeneration() == generation && programCounter == block.getEndAddress() - 4
+                        && !BlockCompiler.isCompilable(last.getOpcode())) {
+                    executeInstruction(last);
+                }
+                return;
+            }
         }
 
-        int value = bus.read(address, address + 4)[0];
-
-        switch (parts[0]) {
-            case "lb":
-                registers[rd] = (byte) value;
-                break;
-            case "lh":
-                registers[rd] = (short) value;
-                break;
-            case "lw":
-                registers[rd] = value;
-                break;
-            case "lbu":
-                registers[rd] = value & 0xFF;
-                break;
-            case "lhu":
-                registers[rd] = value & 0xFFFF;
+        for (DecodedInstruction instruction : block.getInstructions()) {
+            executeInstruction(instruction);
+            if (blockCache.getGeneration() != generation) {
                 break;
+            }
         }
-
-        Main.info(String.format("Executing: %s rs1=%d imm=%d -> rd=%d address=%d value=%d", parts[0], rs1, imm, rd, address, value));
     }
 
     /**
-     * Executes B-Type instructions which involve conditional branches.
+     * Decodes and executes a given instruction.
      *
-     * @param parts the instruction parts
+     * @param instruction the instruction to be executed
+     * @throws MemoryException if there is an error accessing memory
      */
-    private void executeBType(String[] parts) {
-
-        int rs1 = getRegisterIndex(parts, 1);
-        int rs2 = getRegisterIndex(parts, 2);
-        int imm = getImmediateValue(parts, 3);
-        imm = signExtendImmediate(imm, 12);
-        boolean condition = switch (parts[0]) {
-            case "beq" -> (registers[rs1] == registers[rs2]);
-            case "bne" -> (registers[rs1] != registers[rs2]);
-            case "blt" -> (registers[rs1] < registers[rs2]);
-            case "bge" -> (registers[rs1] >= registers[rs2]);
-            case "bltu" -> (Integer.compareUnsigned(registers[rs1], registers[rs2]) < 0);
-            case "bgeu" -> (Integer.compareUnsigned(registers[rs1], registers[rs2]) >= 0);
-            default -> false;
-        };
-
-        if (condition) {
-            programCounter += imm - 4; // Adjust for the default increment
-        }
-
-        Main.info(String.format("Executing: %s rs1=%d rs2=%d imm=%d -> PC=%d", parts[0], rs1, rs2, imm, programCounter));
+    public void executeInstruction(int instruction) throws MemoryException {
+        Decoder.decode(instruction, decodedInstruction);
+        executeInstruction(decodedInstruction);
     }
 
     /**
-     * Executes S-Type instructions which involve memory store operations.
+     * Executes an already decoded instruction. Every operation works on primitive values only, so retiring
+     * an instruction does not allocate.
      *
-     * @param parts the instruction parts
+     * @param instruction the decoded instruction to be executed
+     * @throws MemoryException if there is an error accessing memory
      */
-    private void executeSType(String[] parts) {
-
-        int rs1 = getRegisterIndex(parts, 1);
-        int rs2 = getRegisterIndex(parts, 2);
-        int imm = getImmediateValue(parts, 3);
-        imm = signExtendImmediate(imm, 12);
-        int address = registers[rs1] + imm;
-        if (address < 0) {
-            throw new RuntimeException(String.format("Memory access out of bounds: %d", address));
+    public void executeInstruction(DecodedInstruction instruction) throws MemoryException {
+        instructionCount++;
+        registers[0] = 0;   // r0 is always zero
+        final int rd = instruction.getRd();
+        final int rs1 = instruction.getRs1();
+        final int rs2 = instruction.getRs2();
+        final int imm = instruction.getImm();
+        final int pc = programCounter;
+        programCounter += 4; // Increment PC for next instruction, by default
+        try {
+            switch (instruction.getOpcode()) {
+                // R-Type
+                case ADD -> registers[rd] = registers[rs1] + registers[rs2];
+                case SUB -> registers[rd] = registers[rs1] - registers[rs2];
+                case SLL -> registers[rd] = registers[rs1] << registers[rs2];
+                case SLT -> registers[rd] = registers[rs1] < registers[rs2] ? 1 : 0;
+                case SLTU -> registers[rd] = Integer.compareUnsigned(registers[rs1], registers[rs2]) < 0 ? 1 : 0;
+                case XOR -> registers[rd] = registers[rs1] ^ registers[rs2];
+                case SRL -> registers[rd] = registers[rs1] >>> registers[rs2];
+                case SRA -> registers[rd] = registers[rs1] >> registers[rs2];
+                case OR -> registers[rd] = registers[rs1] | registers[rs2];
+                case AND -> registers[rd] = registers[rs1] & registers[rs2];
+                // U-Type
+                case LUI -> registers[rd] = imm;
+                case AUIPC -> registers[rd] = pc + imm;
+                // J-Type and I-Type-jalr
+                case JAL -> {
+                    registers[rd] = programCounter;
+                    programCounter = pc + imm;
+                }
+                case JALR -> {
+                    final int target = (registers[rs1] + imm) & ~1;
+                    registers[rd] = programCounter;
+                    programCounter = target;
+                }
+                // I-Type-load
+                case LB -> registers[rd] = (byte) bus.load8(registers[rs1] + imm);
+                case LH -> registers[rd] = (short) bus.load16(registers[rs1] + imm);
+                case LW -> registers[rd] = bus.load32(registers[rs1] + imm);
+                case LBU -> registers[rd] = bus.load8(registers[rs1] + imm);
+                case LHU -> registers[rd] = bus.load16(registers[rs1] + imm);
+                // B-Type
+                case BEQ -> branch(registers[rs1] == registers[rs2], pc, imm);
+                case BNE -> branch(registers[rs1] != registers[rs2], pc, imm);
+                case BLT -> branch(registers[rs1] < registers[rs2], pc, imm);
+                case BGE -> branch(registers[rs1] >= registers[rs2], pc, imm);
+                case BLTU -> branch(Integer.compareUnsigned(registers[rs1], registers[rs2]) < 0, pc, imm);
+                case BGEU -> branch(Integer.compareUnsigned(registers[rs1], registers[rs2]) >= 0, pc, imm);
+                // S-Type
+                case SB -> bus.store8(registers[rs1] + imm, registers[rs2]);
+                case SH -> bus.store16(registers[rs1] + imm, registers[rs2]);
+                case SW -> bus.store32(registers[rs1] + imm, registers[rs2]);
+                // I-Type-immediate
+                case ADDI -> registers[rd] = registers[rs1] + imm;
+                case SLTI -> registers[rd] = registers[rs1] < imm ? 1 : 0;
+                case SLTIU -> registers[rd] = Integer.compareUnsigned(registers[rs1], imm) < 0 ? 1 : 0;
+                case XORI -> registers[rd] = registers[rs1] ^ imm;
+                case ORI -> registers[rd] = registers[rs1] | imm;
+                case ANDI -> registers[rd] = registers[rs1] & imm;
+                case SLLI -> registers[rd] = registers[rs1] << imm;
+                case SRLI -> registers[rd] = registers[rs1] >>> imm;
+                case SRAI -> registers[rd] = registers[rs1] >> imm;
+                // System
+                case ECALL -> handleEcall();
+                case EBREAK -> handleEbreak();
+                case MRET -> handleMret();
+                // I-Type-csr
+                case CSRRW, CSRRS, CSRRC, CSRRWI, CSRRSI, CSRRCI -> executeITypeControlStatusRegister(instruction);
+                default -> {
+                    programCounter = pc; // Revert PC increment if the operation is unknown
+                    throw new RuntimeException(String.format("Unknown operation: %s", Decoder.decodeInstruction(instruction.getRaw())));
+                }
+            }
+        } catch (MemoryException e) {
+            programCounter = pc; // Leave the PC on the faulting load or store, as for an unknown operation
+            throw e;
         }
 
-        switch (parts[0]) {
-            case "sb":
-                bus.write(address, new int[]{registers[rs2] & 0xFF});
-                break;
-            case "sh":
-                bus.write(address, new int[]{(registers[rs2] & 0xFFFF)});
-                break;
-            case "sw":
-                bus.write(address, new int[]{registers[rs2]});
-                break;
+        if (Main.isLogEnabled()) {
+            Main.info(String.format("Executing: %s -> PC=%d", Decoder.decodeInstruction(instruction.getRaw()), programCounter));
         }
-
-        Main.info(String.format("Executing: %s rs1=%d rs2=%d imm=%d -> address=%d, value=%d", parts[0], rs1, rs2, imm, address, registers[rs2]));
     }
 
     /**
-     * Executes I-Type immediate instructions which involve immediate values.
+     * Takes a B-Type branch if its condition holds.
      *
-     * @param parts the instruction parts
+     * @param condition whether the branch is taken
+     * @param pc        the address of the branch instruction
+     * @param imm       the branch offset
      */
-    private void executeITypeImmediate(String[] parts) {
-
-        int rd = getRegisterIndex(parts, 1);
-        int rs1 = getRegisterIndex(parts, 2);
-        int imm = getImmediateValue(parts, 3);
-        imm = signExtendImmediate(imm, 12);
-        int result = switch (parts[0]) {
-            case "addi" -> registers[rs1] + imm;
-            case "slti" -> (registers[rs1] < imm) ? 1 : 0;
-            case "sltiu" -> (Integer.compareUnsigned(registers[rs1], imm) < 0) ? 1 : 0;
-            case "xori" -> registers[rs1] ^ imm;
-            case "ori" -> registers[rs1] | imm;
-            case "andi" -> registers[rs1] & imm;
-            case "slli" -> registers[rs1] << imm;
-            case "srli" -> registers[rs1] >>> imm;
-            case "srai" -> registers[rs1] >> imm;
-            default -> 0;
-        };
-
-        registers[rd] = result;
-
-        Main.info(String.format("Executing: %s rs1=%d imm=%d -> rd=%d", parts[0], rs1, imm, rd));
-    }
+    private void branch(final boolean condition, final int pc, final int imm) {
 
-    /**
-     * Executes E-Type instructions which handle system calls and breaks.
-     *
-     * @param parts the instruction parts
-     */
-    private void executeEType(String[] parts) {
-        switch (parts[0]) {
-            case "ecall":
-                handleEcall();
-                break;
-            case "ebreak":
-                handleEbreak();
-                break;
-            case "mret":
-                handleMret();
-                break;
+        if (condition) {
+            programCounter = pc + imm;
         }
     }
 
     /**
      * Executes I-Type control and status register instructions.
      *
-     * @param parts the instruction parts
+     * @param instruction the decoded instruction
      */
-    private void executeITypeControlStatusRegister(String[] parts) {
+    private void executeITypeControlStatusRegister(DecodedInstruction instruction) {
 
-        int rd = getRegisterIndex(parts, 1);
-        int csr = getImmediateValue(parts, 2);
-        int rs1 = getRegisterIndex(parts, 3);
-        csr = signExtendImmediate(csr, 12);
+        int rs1 = instruction.getRs1();
+        int csr = instruction.getImm();
         int csrValue = csrRegisters[csr];
-        switch (parts[0]) {
-            case "csrrw":
+        switch (instruction.getOpcode()) {
+            case CSRRW:
                 csrRegisters[csr] = registers[rs1];
-                registers[rd] = csrValue;
                 break;
-            case "csrrs":
+            case CSRRS:
                 csrRegisters[csr] |= registers[rs1];
-                registers[rd] = csrValue;
                 break;
-            case "csrrc":
+            case CSRRC:
                 csrRegisters[csr] &= ~registers[rs1];
-                registers[rd] = csrValue;
                 break;
-            case "csrrwi":
+            case CSRRWI:
                 csrRegisters[csr] = rs1;
-                registers[rd] = csrValue;
                 break;
-            case "csrrsi":
+            case CSRRSI:
                 csrRegisters[csr] |= rs1;
-                registers[rd] = csrValue;
                 break;
-            case "csrrci":
+            case CSRRCI:
                 csrRegisters[csr] &= ~rs1;
-                registers[rd] = csrValue;
                 break;
         }
-
-        Main.info(String.format("Executing: %s rs1=%d csr=%d -> rd=%d", parts[0], rs1, csr, rd));
+        registers[instruction.getRd()] = csrValue;
+        nextInterruptCheck = 0; // The write may have enabled interrupts
     }
 
     /**
      * Handles the "ecall" instruction by entering in system mode.
      */
     private void handleEcall() {
-        throw new RuntimeException("Program has terminated via syscall exit.");
+        throw new EcallException("Program has terminated via syscall exit.");
     }
 
     /**
      * Handles the "ebreak" instruction by terminating the program via syscall exit.
      */
     private void handleEbreak() {
-        int timerInterruptCount = bus.read(1024, 1028)[0];   // Reading the value from position 1024
-        int keyInterruptCount = bus.read(1028, 1032)[0];     // Reading the value from position 1028
+        int timerInterruptCount = bus.load32(1024);   // Reading the value from position 1024
+        int keyInterruptCount = bus.load32(1028);     // Reading the value from position 1028
 
         Main.info("Timer Interrupt Count (memory at position 1024): " + timerInterruptCount);
         Main.info("Key Interrupt Count (memory at position 1028): " + keyInterruptCount);
+        Main.info("Decode cache hits: " + decodeCache.getHits() + ", misses: " + decodeCache.getMisses());
+        Main.info("Blocks translated: " + blockCache.getTranslations() + ", flushes: " + blockCache.getFlushes());
+        if (blockCompiler != null) {
+            Main.info("Blocks compiled: " + blockCompiler.getCompilations());
+        }
+        if (ebreakListener != null) {
+            ebreakListener.run();
+        }
         throw new EbreakException("Program has terminated via syscall exit.");
     }
 
@@ -547,7 +504,8 @@ public class CPU extends CPUInterrupt {
     private void handleMret() {
         programCounter = csrRegisters[MEPC];
         setCsrRegister(MIP, 0);
-        setStartTime();
+        clint.rearm();
+        nextInterruptCheck = 0;
         Main.info("MRET: Return from machine interrupt handler.");
     }
 }
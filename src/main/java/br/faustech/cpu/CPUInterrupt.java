@@ -1,6 +1,7 @@
 package br.faustech.cpu;
 
 import br.faustech.Main;
+import br.faustech.timer.Clint;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -14,37 +15,48 @@ public abstract class CPUInterrupt extends Thread {
      * Indicates whether interrupts are currently enabled.
      */
     @Getter
-    protected static boolean isInterruptEnabled = false;
+    protected volatile boolean isInterruptEnabled = false;
 
     /**
      * Stores data related to the current interrupt.
      */
     @Setter
-    protected static int interruptData;
+    protected volatile int interruptData;
 
     /**
      * Flag to indicate if a key has been pressed.
      */
     @Setter
-    protected static boolean keyPressedFlag = false;
+    protected volatile boolean keyPressedFlag = false;
 
     /**
-     * Records the start time of the interrupt monitoring.
+     * The machine timer that raises timer interrupts.
      */
     @Getter
-    protected static long startTime = 0;
+    protected final Clint clint;
 
     /**
-     * Checks if an interrupt condition has been met based on elapsed time or key press.
+     * Constructs the interrupt handler around a machine timer. Until the program writes mtimecmp, the timer
+     * re-arms itself every {@link Main#getClockSpeed()} ticks.
      *
-     * @return 1 if the elapsed time has exceeded the clock speed, 2 if a key has been pressed, or 0 otherwise.
+     * @param clint the machine timer
      */
-    public static int checkInterruption() {
-        long elapsedTime = System.currentTimeMillis() - startTime;
+    protected CPUInterrupt(final Clint clint) {
 
-        if (elapsedTime >= Main.getClockSpeed()) {
+        this.clint = clint;
+        clint.setPeriod(Main.getClockSpeed());
+    }
+
+    /**
+     * Checks if an interrupt condition has been met based on the machine timer or key press.
+     *
+     * @return 1 if the timer interrupt is pending, 2 plus the key code if a key has been pressed, or 0 otherwise.
+     */
+    public int checkInterruption() {
+
+        if (clint.isPending()) {
             isInterruptEnabled = false;
-            setStartTime();
+            clint.rearm();
             return 1;
         } else if (keyPressedFlag) {
             isInterruptEnabled = false;
@@ -53,11 +65,4 @@ public abstract class CPUInterrupt extends Thread {
         }
         return 0;
     }
-
-    /**
-     * Sets the start time to the current system time in milliseconds.
-     */
-    public static void setStartTime() {
-        startTime = System.currentTimeMillis();
-    }
 }
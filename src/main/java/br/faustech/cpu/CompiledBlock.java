@@ -0,0 +1,18 @@
+package br.faustech.cpu;
+
+/**
+ * A basic block translated to JVM bytecode by the {@link BlockCompiler}.
+ */
+public interface CompiledBlock {
+
+    /**
+     * Executes the compiled instructions of the block. Guest registers are loaded from and written back to
+     * the register file only on entry and exit.
+     *
+     * @param registers the CPU register file
+     * @param runtime   the memory access helpers for the machine the block runs on
+     * @return the address execution continues at
+     */
+    int execute(int[] registers, JitRuntime runtime);
+
+}
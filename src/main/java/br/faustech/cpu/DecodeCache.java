@@ -0,0 +1,130 @@
+package br.faustech.cpu;
+
+import br.faustech.bus.Bus;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Caches decoded instructions indexed by PC / 4 over the RAM region, so loop bodies are fetched and decoded
+ * only once. Entries are invalidated whenever memory is written over the words they were decoded from, which
+ * keeps self-modifying code and program reloads working. Only the first {@link #MAX_CODE_SIZE} bytes of RAM
+ * are cached, and the tables are allocated per 4 KB page of code on its first fetch, so the cache grows with
+ * the code the program runs rather than with the size of the RAM.
+ */
+public class DecodeCache {
+
+    static final int MAX_CODE_SIZE = 16 * 1024 * 1024; // Bytes of RAM, from address 0, that may hold cached code
+
+    static final int PAGE_WORDS_SHIFT = 10; // Words per page of the cache tables, 4 KB of code
+
+    static final int PAGE_WORDS = 1 << PAGE_WORDS_SHIFT; // Number of words per page
+
+    static final int WORD_MASK = PAGE_WORDS - 1; // Index of a word within its page
+
+    private final Bus bus; // The bus used to fetch instructions on a miss
+
+    private final int words; // Number of RAM words the cache covers
+
+    private final DecodedInstruction[][] entries; // Decoded instruction per RAM word, per page fetched from
+
+    private final boolean[][] valid; // Whether the entry for a RAM word matches the current memory contents
+
+    private final DecodedInstruction uncached = new DecodedInstruction(); // Decode target for PCs outside the cache
+
+    @Getter
+    private long hits; // Number of fetches served from the cache
+
+    @Getter
+    private long misses; // Number of fetches that had to read and decode memory
+
+    /**
+     * Constructs a decode cache covering the memory attached to the given bus.
+     *
+     * @param bus the bus used to fetch instructions
+     */
+    public DecodeCache(final Bus bus) {
+
+        this.bus = bus;
+        this.words = Math.min(bus.getMemory().getMemorySize(), MAX_CODE_SIZE) / 4;
+        this.entries = new DecodedInstruction[(words + WORD_MASK) >>> PAGE_WORDS_SHIFT][];
+        this.valid = new boolean[entries.length][];
+        bus.getMemory().addWriteListener(this::invalidate);
+    }
+
+    /**
+     * Returns the decoded instruction at the given program counter, decoding it on a miss.
+     *
+     * @param programCounter the address of the instruction
+     * @return the decoded instruction, valid until the next fetch of the same address
+     */
+    public DecodedInstruction fetch(final int programCounter) {
+
+        final int index = programCounter >>> 2;
+        if ((programCounter & 0x3) != 0 || index >= words) {
+            misses++;
+            Decoder.decode(bus.load32(programCounter), uncached);
+            return uncached;
+        }
+
+        final int page = index >>> PAGE_WORDS_SHIFT;
+        final int word = index & WORD_MASK;
+        boolean[] pageValid = valid[page];
+        if (pageValid != null && pageValid[word]) {
+            hits++;
+            return entries[page][word];
+        }
+
+        misses++;
+        if (pageValid == null) {
+            pageValid = new boolean[PAGE_WORDS];
+            valid[page] = pageValid;
+            entries[page] = new DecodedInstruction[PAGE_WORDS];
+        }
+        DecodedInstruction entry = entries[page][word];
+        if (entry == null) {
+            entry = new DecodedInstruction();
+            entries[page][word] = entry;
+        }
+        Decoder.decode(bus.load32(programCounter), entry);
+        pageValid[word] = true;
+        return entry;
+    }
+
+    /**
+     * Drops the entries for every word overlapping the given address range.
+     *
+     * @param beginAddress the first address written (inclusive)
+     * @param endAddress   the last address written (exclusive)
+     */
+    public void invalidate(final int beginAddress, final int endAddress) {
+
+        if (endAddress <= beginAddress || endAddress <= 0) {
+            return;
+        }
+
+        final int first = Math.max(beginAddress, 0) >>> 2;
+        final int last = Math.min((endAddress - 1) >>> 2, words - 1);
+        for (int i = first; i <= last; ) {
+            final int end = Math.min(last, i | WORD_MASK); // Last word of the range within the page of i
+            final boolean[] pageValid = valid[i >>> PAGE_WORDS_SHIFT];
+            if (pageValid != null) {
+                Arrays.fill(pageValid, i & WORD_MASK, (end & WORD_MASK) + 1, false);
+            }
+            i = end + 1;
+        }
+    }
+
+    /**
+     * Drops every entry in the cache. The pages stay allocated for the code fetched next.
+     */
+    public void clear() {
+
+        for (boolean[] pageValid : valid) {
+            if (pageValid != null) {
+                Arrays.fill(pageValid, false);
+            }
+        }
+    }
+
+}
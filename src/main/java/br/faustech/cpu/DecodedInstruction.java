@@ -0,0 +1,45 @@
+package br.faustech.cpu;
+
+import lombok.Getter;
+
+/**
+ * Holds the fields of a decoded instruction. The immediate is stored already sign-extended (and, for
+ * U-Type instructions, already shifted into the upper 20 bits), so executing it needs no further parsing.
+ * Instances are mutable so that the CPU can decode into the same object for every fetched word.
+ */
+@Getter
+public class DecodedInstruction {
+
+    private int raw;                            // The raw 32-bit instruction word
+
+    private Opcode opcode = Opcode.UNKNOWN;     // The decoded operation
+
+    private int rd;                             // Destination register index
+
+    private int rs1;                            // First source register index (or zimm for CSR immediates)
+
+    private int rs2;                            // Second source register index
+
+    private int imm;                            // Sign-extended immediate (CSR address for CSR instructions)
+
+    /**
+     * Overwrites every field of this instruction.
+     *
+     * @param raw    the raw 32-bit instruction word
+     * @param opcode the decoded operation
+     * @param rd     the destination register index
+     * @param rs1    the first source register index
+     * @param rs2    the second source register index
+     * @param imm    the sign-extended immediate
+     */
+    void set(final int raw, final Opcode opcode, final int rd, final int rs1, final int rs2, final int imm) {
+
+        this.raw = raw;
+        this.opcode = opcode;
+        this.rd = rd;
+        this.rs1 = rs1;
+        this.rs2 = rs2;
+        this.imm = imm;
+    }
+
+}
@@ -6,7 +6,134 @@ package br.faustech.cpu;
 public class Decoder {
 
     /**
-     * Decodes a given instruction and returns a human-readable string.
+     * Decodes a given instruction into a new structured instruction.
+     *
+     * @param instruction The 32-bit instruction to decode.
+     * @return The decoded instruction.
+     */
+    public static DecodedInstruction decode(int instruction) {
+
+        DecodedInstruction decoded = new DecodedInstruction();
+        decode(instruction, decoded);
+        return decoded;
+    }
+
+    /**
+     * Decodes a given instruction into an existing structured instruction, without allocating.
+     *
+     * @param instruction The 32-bit instruction to decode.
+     * @param target      The instruction whose fields are overwritten.
+     */
+    public static void decode(int instruction, DecodedInstruction target) {
+
+        int opcode = instruction & 0x7F;                                // Extract the 7-bit opcode
+        int rd = (instruction >> 7) & 0x1F;
+        int funct3 = (instruction >> 12) & 0x7;
+        int rs1 = (instruction >> 15) & 0x1F;
+        int rs2 = (instruction >> 20) & 0x1F;
+        int funct7 = (instruction >> 25) & 0x7F;
+
+        switch (opcode) {
+            case 0x33 -> {                                              // R-Type
+                Opcode operation = switch (funct3) {
+                    case 0b000 -> (funct7 == 0) ? Opcode.ADD : Opcode.SUB;
+                    case 0b001 -> Opcode.SLL;
+                    case 0b010 -> Opcode.SLT;
+                    case 0b011 -> Opcode.SLTU;
+                    case 0b100 -> Opcode.XOR;
+                    case 0b101 -> (funct7 == 0) ? Opcode.SRL : Opcode.SRA;
+                    case 0b110 -> Opcode.OR;
+                    default -> Opcode.AND;
+                };
+                target.set(instruction, operation, rd, rs1, rs2, 0);
+            }
+            case 0x67 -> target.set(instruction, Opcode.JALR, rd, rs1, 0, instruction >> 20); // I-Type-jalr
+            case 0x03 -> {                                              // I-Type-load
+                Opcode operation = switch (funct3) {
+                    case 0b000 -> Opcode.LB;
+                    case 0b001 -> Opcode.LH;
+                    case 0b010 -> Opcode.LW;
+                    case 0b100 -> Opcode.LBU;
+                    case 0b101 -> Opcode.LHU;
+                    default -> Opcode.UNKNOWN;
+                };
+                target.set(instruction, operation, rd, rs1, 0, instruction >> 20);
+            }
+            case 0x13 -> {                                              // I-Type-immediate
+                int imm = instruction >> 20;
+                Opcode operation = switch (funct3) {
+                    case 0b000 -> Opcode.ADDI;
+                    case 0b010 -> Opcode.SLTI;
+                    case 0b011 -> Opcode.SLTIU;
+                    case 0b100 -> Opcode.XORI;
+                    case 0b110 -> Opcode.ORI;
+                    case 0b111 -> Opcode.ANDI;
+                    case 0b001 -> Opcode.SLLI;
+                    default -> (imm & 0xFE0) == 0 ? Opcode.SRLI : Opcode.SRAI;
+                };
+                if (funct3 == 0b001 || funct3 == 0b101) {
+                    imm &= 0x1F;                                        // Shift amount
+                }
+                target.set(instruction, operation, rd, rs1, 0, imm);
+            }
+            case 0x73 -> {                                              // I-Type-csr
+                int csr = instruction >>> 20;
+                Opcode operation = switch (funct3) {
+                    case 0b000 -> csr == 0 ? Opcode.ECALL
+                            : csr == 0x01 ? Opcode.EBREAK
+                            : csr < 0x800 ? Opcode.MRET : Opcode.UNKNOWN;
+                    case 0b001 -> Opcode.CSRRW;
+                    case 0b010 -> Opcode.CSRRS;
+                    case 0b011 -> Opcode.CSRRC;
+                    case 0b101 -> Opcode.CSRRWI;
+                    case 0b110 -> Opcode.CSRRSI;
+                    case 0b111 -> Opcode.CSRRCI;
+                    default -> Opcode.UNKNOWN;
+                };
+                target.set(instruction, operation, rd, rs1, 0, csr);
+            }
+            case 0x23 -> {                                              // S-Type
+                Opcode operation = switch (funct3) {
+                    case 0b000 -> Opcode.SB;
+                    case 0b001 -> Opcode.SH;
+                    case 0b010 -> Opcode.SW;
+                    default -> Opcode.UNKNOWN;
+                };
+                int imm = ((instruction >> 25) << 5) | rd;              // imm[11:5] is already sign-extended
+                target.set(instruction, operation, 0, rs1, rs2, imm);
+            }
+            case 0x63 -> {                                              // B-Type
+                Opcode operation = switch (funct3) {
+                    case 0b000 -> Opcode.BEQ;
+                    case 0b001 -> Opcode.BNE;
+                    case 0b100 -> Opcode.BLT;
+                    case 0b101 -> Opcode.BGE;
+                    case 0b110 -> Opcode.BLTU;
+                    case 0b111 -> Opcode.BGEU;
+                    default -> Opcode.UNKNOWN;
+                };
+                int imm = ((instruction >> 31) << 12)                   // imm[12], sign-extended
+                        | (((instruction >> 7) & 0x1) << 11)            // imm[11]
+                        | (((instruction >> 25) & 0x3F) << 5)           // imm[10:5]
+                        | (((instruction >> 8) & 0xF) << 1);            // imm[4:1]
+                target.set(instruction, operation, 0, rs1, rs2, imm);
+            }
+            case 0x37 -> target.set(instruction, Opcode.LUI, rd, 0, 0, instruction & 0xFFFFF000);   // U-Type
+            case 0x17 -> target.set(instruction, Opcode.AUIPC, rd, 0, 0, instruction & 0xFFFFF000); // U-Type
+            case 0x6F -> {                                              // J-Type
+                int imm = ((instruction >> 31) << 20)                   // imm[20], sign-extended
+                        | (instruction & 0xFF000)                       // imm[19:12]
+                        | (((instruction >> 20) & 0x1) << 11)           // imm[11]
+                        | (((instruction >> 21) & 0x3FF) << 1);         // imm[10:1]
+                target.set(instruction, Opcode.JAL, rd, 0, 0, imm);
+            }
+            default -> target.set(instruction, Opcode.UNKNOWN, rd, rs1, rs2, 0);
+        }
+    }
+
+    /**
+     * Decodes a given instruction and returns a human-readable string. This is the disassembly view used
+     * for logging; execution uses {@link #decode(int, DecodedInstruction)} instead.
      *
      * @param instruction The 32-bit instruction to decode.
      * @return A string representation of the decoded instruction.
@@ -0,0 +1,12 @@
+package br.faustech.cpu;
+
+/**
+ * Enumerates the reasons a bounded CPU run can stop.
+ */
+public enum ExitReason {
+    EBREAK,             // The program executed ebreak
+    ECALL,              // The program executed ecall
+    INSTRUCTION_LIMIT,  // The instruction budget was used up
+    TIMEOUT,            // The wall-time budget was used up
+    ERROR               // The program faulted, e.g. on an unknown instruction or invalid address
+}
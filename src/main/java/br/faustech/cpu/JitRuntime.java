@@ -0,0 +1,158 @@
+package br.faustech.cpu;
+
+import br.faustech.bus.Bus;
+import br.faustech.memory.MemoryException;
+import lombok.Getter;
+
+/**
+ * Helpers called from compiled blocks. Loads and stores use the typed accessors of the {@link Bus}, which go
+ * straight to RAM when the access fits in it, so compiled code has the same semantics as the interpreter.
+ */
+public final class JitRuntime {
+
+    private final Bus bus; // The bus used for loads and stores
+
+    private final BlockCache blockCache; // Used to detect stores that overwrote translated code
+
+    @Getter
+    private long retired; // Number of instructions retired by compiled blocks
+
+    @Getter
+    private int faultAddress; // Address of the last compiled load or store that faulted
+
+    /**
+     * Constructs the runtime for the machine attached to the given bus.
+     *
+     * @param bus        the bus of the machine
+     * @param blockCache the block cache of the CPU running the compiled blocks
+     */
+    public JitRuntime(final Bus bus, final BlockCache blockCache) {
+
+        this.bus = bus;
+        this.blockCache = blockCache;
+    }
+
+    /**
+     * Loads the zero-extended byte at the given address.
+     *
+     * @param address the address to load from
+     * @return the byte at the address
+     * @throws MemoryException if the address is invalid
+     */
+    public int load8(final int address) throws MemoryException {
+
+        return bus.load8(address);
+    }
+
+    /**
+     * Loads the zero-extended halfword at the given address.
+     *
+     * @param address the address to load from
+     * @return the halfword at the address
+     * @throws MemoryException if the address is invalid
+     */
+    public int load16(final int address) throws MemoryException {
+
+        return bus.load16(address);
+    }
+
+    /**
+     * Loads the word at the given address.
+     *
+     * @param address the address to load from
+     * @return the word at the address
+     * @throws MemoryException if the address is invalid
+     */
+    public int load32(final int address) throws MemoryException {
+
+        return bus.load32(address);
+    }
+
+    /**
+     * Stores the low byte of a value at the given address.
+     *
+     * @param address the address to store to
+     * @param value   the value whose low byte is stored
+     * @return true if the store overwrote translated code, so the running block must exit
+     */
+    public boolean store8(final int address, final int value) {
+
+        final int generation = blockCache.getGeneration();
+        bus.store8(address, value);
+        return blockCache.getGeneration() != generation;
+    }
+
+    /**
+     * Stores the low halfword of a value at the given address.
+     *
+     * @param address the address to store to
+     * @param value   the value whose low halfword is stored
+     * @return true if the store overwrote translated code, so the running block must exit
+     */
+    public boolean store16(final int address, final int value) {
+
+        final int generation = blockCache.getGeneration();
+        bus.store16(address, value);
+        return blockCache.getGeneration() != generation;
+    }
+
+    /**
+     * Stores a word at the given address.
+     *
+     * @param address the address to store to
+     * @param value   the word to store
+     * @return true if the store overwrote translated code, so the running block must exit
+     */
+    public boolean store32(final int address, final int value) {
+
+        final int generation = blockCache.getGeneration();
+        bus.store32(address, value);
+        return blockCache.getGeneration() != generation;
+    }
+
+    /**
+     * Counts instructions retired by a compiled block, called at each block exit.
+     *
+     * @param count the number of instructions the block retired
+     */
+    public void retire(final int count) {
+
+        retired += count;
+    }
+
+    /**
+     * Records the address of a load or store that faulted in a compiled block, called just before the block
+     * rethrows the fault.
+     *
+     * @param address the address of the faulting instruction
+     */
+    public void fault(final int address) {
+
+        faultAddress = address;
+    }
+
+    /**
+     * Signed set-less-than, as used by slt and slti.
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return 1 if a is less than b, 0 otherwise
+     */
+    public static int lessThan(final int a, final int b) {
+
+        return a < b ? 1 : 0;
+    }
+
+    /**
+     * Unsigned set-less-than, as used by sltu and sltiu.
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return 1 if a is less than b as unsigned values, 0 otherwise
+     */
+    public static int lessThanUnsigned(final int a, final int b) {
+
+        return Integer.compareUnsigned(a, b) < 0 ? 1 : 0;
+    }
+
+}
@@ -0,0 +1,34 @@
+package br.faustech.cpu;
+
+/**
+ * Enumerates the operations produced by the decoder, so the CPU can dispatch on a decoded instruction
+ * without parsing its textual form.
+ */
+public enum Opcode {
+    ADD, SUB, SLL, SLT, SLTU, XOR, SRL, SRA, OR, AND,       // R-Type
+    LUI, AUIPC,                                             // U-Type
+    JAL,                                                    // J-Type
+    JALR,                                                   // I-Type-jalr
+    LB, LH, LW, LBU, LHU,                                   // I-Type-load
+    BEQ, BNE, BLT, BGE, BLTU, BGEU,                         // B-Type
+    SB, SH, SW,                                             // S-Type
+    ADDI, SLTI, SLTIU, XORI, ORI, ANDI, SLLI, SRLI, SRAI,   // I-Type-immediate
+    ECALL, EBREAK, MRET,                                    // System
+    CSRRW, CSRRS, CSRRC, CSRRWI, CSRRSI, CSRRCI,            // I-Type-csr
+    UNKNOWN;                                                // Any encoding the decoder does not recognize
+
+    /**
+     * Tells whether this operation may change control flow or machine state in a way that must end a
+     * basic block: branches, jumps, system instructions, CSR accesses and unknown encodings.
+     *
+     * @return true if a basic block must end after this operation
+     */
+    public boolean endsBasicBlock() {
+
+        return switch (this) {
+            case BEQ, BNE, BLT, BGE, BLTU, BGEU, JAL, JALR, ECALL, EBREAK, MRET,
+                 CSRRW, CSRRS, CSRRC, CSRRWI, CSRRSI, CSRRCI, UNKNOWN -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package br.faustech.fleet;
+
+/**
+ * A program to run on its own machine, with the seed passed to it in register a0.
+ *
+ * @param name    the name shown in the report
+ * @param program the program instructions, loaded at address 0
+ * @param seed    the value of register a0 when the program starts
+ */
+public record FleetJob(String name, int[] program, int seed) {
+}
@@ -0,0 +1,28 @@
+package br.faustech.fleet;
+
+import br.faustech.cpu.ExitReason;
+
+/**
+ * The outcome of one fleet job.
+ *
+ * @param name          the name of the job
+ * @param exitReason    the reason the run stopped
+ * @param instructions  the number of instructions retired
+ * @param nanos         the wall time of the run, in nanoseconds
+ * @param checksum      the CRC-32 checksum of the final memory contents
+ * @param residentBytes the host memory backing the RAM of the machine at the end of the run
+ * @param error         the error message if the program faulted, otherwise null
+ */
+public record FleetJobResult(String name, ExitReason exitReason, long instructions, long nanos, long checksum,
+                             long residentBytes, String error) {
+
+    /**
+     * Returns the throughput of the run.
+     *
+     * @return the millions of instructions retired per second
+     */
+    public double mips() {
+
+        return nanos == 0 ? 0 : instructions / (nanos / 1e3);
+    }
+}
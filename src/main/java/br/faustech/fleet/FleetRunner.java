@@ -0,0 +1,203 @@
+package br.faustech.fleet;
+
+import br.faustech.Machine;
+import br.faustech.cpu.CPU;
+import br.faustech.cpu.ExitReason;
+import br.faustech.memory.DenseMemory;
+import br.faustech.memory.Memory;
+import br.faustech.reader.ProgramUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs many programs in one JVM, each on its own headless machine. Jobs are submitted to an executor, which is
+ * either one virtual thread per job or a bounded pool, so independent jobs scale across cores.
+ */
+public class FleetRunner {
+
+    private static final int A0 = 10; // Register that receives the job seed
+
+    private final Supplier<Memory> memoryFactory; // Creates the RAM of each machine
+
+    private final int width; // Screen width of each machine
+
+    private final int height; // Screen height of each machine
+
+    private final long maxInstructions; // Instruction budget of each job
+
+    private final long timeoutMillis; // Wall-time budget of each job
+
+    private final Consumer<CPU> cpuSetup; // Configures the execution mode of each CPU
+
+    /**
+     * Constructs a runner that gives every job a machine with the same configuration.
+     *
+     * @param memorySize      the RAM of each machine, in bytes
+     * @param width           the screen width of each machine
+     * @param height          the screen height of each machine
+     * @param maxInstructions the instruction budget of each job
+     * @param timeoutMillis   the wall-time budget of each job, in milliseconds
+     * @param cpuSetup        configures the execution mode of each CPU before it runs
+     */
+    public FleetRunner(final int memorySize, final int width, final int height, final long maxInstructions,
+                       final long timeoutMillis, final Consumer<CPU> cpuSetup) {
+
+        this(() -> new DenseMemory(memorySize), width, height, maxInstructions, timeoutMillis, cpuSetup);
+    }
+
+    /**
+     * Constructs a runner that gives every job a machine with the same configuration and RAM created by the
+     * given factory, e.g. sparse RAM for large address spaces.
+     *
+     * @param memoryFactory   creates the RAM of each machine
+     * @param width           the screen width of each machine
+     * @param height          the screen height of each machine
+     * @param maxInstructions the instruction budget of each job
+     * @param timeoutMillis   the wall-time budget of each job, in milliseconds
+     * @param cpuSetup        configures the execution mode of each CPU before it runs
+     */
+    public FleetRunner(final Supplier<Memory> memoryFactory, final int width, final int height,
+                       final long maxInstructions, final long timeoutMillis, final Consumer<CPU> cpuSetup) {
+
+        this.memoryFactory = memoryFactory;
+        this.width = width;
+        this.height = height;
+        this.maxInstructions = maxInstructions;
+        this.timeoutMillis = timeoutMillis;
+        this.cpuSetup = cpuSetup;
+    }
+
+    /**
+     * Creates one job for every .bin and .txt program in a directory, in name order, all with seed 0.
+     *
+     * @param directory the directory containing the programs
+     * @return the jobs
+     * @throws IOException if a program cannot be read
+     */
+    public static List<FleetJob> jobsFromDirectory(final File directory) throws IOException {
+
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(".bin") || name.endsWith(".txt"));
+        if (files == null) {
+            throw new FileNotFoundException(String.format("Directory %s not found.", directory.getName()));
+        }
+        Arrays.sort(files);
+
+        final ProgramUtils programUtils = new ProgramUtils(null);
+        final List<FleetJob> jobs = new ArrayList<>(files.length);
+        for (File file : files) {
+            jobs.add(new FleetJob(file.getName(), programUtils.readFile(file), 0));
+        }
+        return jobs;
+    }
+
+    /**
+     * Creates jobs that run the same program with seeds 0 to seeds - 1. The program is read only once.
+     *
+     * @param file  the program file
+     * @param seeds the number of jobs
+     * @return the jobs
+     * @throws IOException if the program cannot be read
+     */
+    public static List<FleetJob> jobsFromSeeds(final File file, final int seeds) throws IOException {
+
+        final int[] program = new ProgramUtils(null).readFile(file);
+        final List<FleetJob> jobs = new ArrayList<>(seeds);
+        for (int seed = 0; seed < seeds; seed++) {
+            jobs.add(new FleetJob(String.format("%s#%d", file.getName(), seed), program, seed));
+        }
+        return jobs;
+    }
+
+    /**
+     * Runs every job on the given executor and waits for all of them.
+     *
+     * @param jobs     the jobs to run
+     * @param executor the executor running the jobs
+     * @return the results, in the order of the jobs
+     * @throws InterruptedException if interrupted while waiting for the jobs
+     */
+    public List<FleetJobResult> run(final List<FleetJob> jobs, final ExecutorService executor)
+            throws InterruptedException {
+
+        final List<Future<FleetJobResult>> futures = new ArrayList<>(jobs.size());
+        for (FleetJob job : jobs) {
+            futures.add(executor.submit(() -> runJob(job)));
+        }
+
+        final List<FleetJobResult> results = new ArrayList<>(jobs.size());
+        for (Future<FleetJobResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs one job on a fresh machine, on the calling thread.
+     *
+     * @param job the job to run
+     * @return the result of the job
+     */
+    public FleetJobResult runJob(final FleetJob job) {
+
+        final Machine machine = new Machine(memoryFactory.get(), width, height);
+        machine.load(job.program());
+        final CPU cpu = machine.getCpu();
+        cpu.setRegister(A0, job.seed());
+        cpuSetup.accept(cpu);
+
+        final long start = System.nanoTime();
+        ExitReason exitReason;
+        String error = null;
+        try {
+            exitReason = machine.run(maxInstructions, timeoutMillis);
+        } catch (RuntimeException e) {
+            exitReason = ExitReason.ERROR;
+            error = e.getMessage();
+        }
+        final long nanos = System.nanoTime() - start;
+
+        return new FleetJobResult(job.name(), exitReason, cpu.getInstructionCount(), nanos,
+                machine.getMemory().checksum(), machine.getMemory().getResidentBytes(), error);
+    }
+
+    /**
+     * Prints one line per job followed by the aggregate throughput of the fleet.
+     *
+     * @param results   the results of the jobs
+     * @param wallNanos the wall time of the whole fleet, in nanoseconds
+     * @param out       the stream to print to
+     */
+    public static void report(final List<FleetJobResult> results, final long wallNanos, final PrintStream out) {
+
+        long instructions = 0;
+        long residentBytes = 0;
+        for (FleetJobResult result : results) {
+            instructions += result.instructions();
+            residentBytes += result.residentBytes();
+            out.printf("%-32s %-17s %14d instructions %9.2f MIPS  checksum %08x  %8d KB resident%s%n",
+                    result.name(), result.exitReason(), result.instructions(), result.mips(), result.checksum(),
+                    result.residentBytes() / 1024, result.error() == null ? "" : "  " + result.error());
+        }
+        out.printf("Jobs: %d%n", results.size());
+        out.printf("Retired instructions: %d%n", instructions);
+        out.printf("Wall time: %.3f ms%n", wallNanos / 1e6);
+        out.printf("Aggregate MIPS: %.2f%n", instructions / (wallNanos / 1e3));
+        out.printf("Resident memory: %d KB%n", residentBytes / 1024);
+    }
+
+}
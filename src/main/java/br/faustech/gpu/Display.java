@@ -0,0 +1,26 @@
+package br.faustech.gpu;
+
+/**
+ * Presents the frames a guest swaps into a framebuffer: in a window, like {@link GPU}, or without any
+ * window or OpenGL, like {@link HeadlessDisplay}.
+ */
+public interface Display {
+
+    /**
+     * Starts presenting frames.
+     */
+    void open();
+
+    /**
+     * Stops presenting frames. Safe to call from any thread.
+     */
+    void close();
+
+    /**
+     * Waits until the display is closed, by {@link #close()} or by the user.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitClose() throws InterruptedException;
+
+}
@@ -0,0 +1,80 @@
+package br.faustech.gpu;
+
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Encodes frames into a video file with FFmpeg. The container and codec follow from the file extension, e.g.
+ * .mp4 or .mkv.
+ */
+public class FFmpegFrameEncoder implements FrameEncoder {
+
+    private final FFmpegFrameRecorder recorder; // The FFmpeg recorder writing the file
+
+    private final Frame frame; // Frame handed to the recorder, reused for every frame
+
+    private final IntBuffer image; // The image of the frame seen as packed pixels
+
+    private final int width, height; // Dimensions of the frames
+
+    /**
+     * Starts a video file.
+     *
+     * @param file      the path of the video file
+     * @param width     the width of the frames
+     * @param height    the height of the frames
+     * @param frameRate the frame rate of the video
+     * @throws IOException if the file cannot be started
+     */
+    public FFmpegFrameEncoder(final String file, final int width, final int height, final double frameRate)
+            throws IOException {
+
+        this.width = width;
+        this.height = height;
+        this.recorder = new FFmpegFrameRecorder(file, width, height);
+        this.recorder.setFrameRate(frameRate);
+        this.recorder.start();
+        this.frame = new Frame(width, height, Frame.DEPTH_UBYTE, 4);
+        // A packed pixel 0xAARRGGBB is stored as the bytes B, G, R, A in little-endian order
+        this.image = ((ByteBuffer) frame.image[0]).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Encodes the next frame.
+     *
+     * @param pixels the packed pixels of the frame
+     * @throws IOException if the frame cannot be encoded
+     */
+    @Override
+    public void encode(final int[] pixels) throws IOException {
+
+        final int stride = frame.imageStride / 4; // Rows may be padded
+        for (int y = 0; y < height; y++) {
+            image.put(y * stride, pixels, y * width, width);
+        }
+        recorder.record(frame, avutil.AV_PIX_FMT_BGRA);
+    }
+
+    /**
+     * Writes the end of the video file and releases FFmpeg.
+     *
+     * @throws IOException if the file cannot be finished
+     */
+    @Override
+    public void close() throws IOException {
+
+        try {
+            recorder.stop();
+        } finally {
+            recorder.release();
+            frame.close();
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package br.faustech.gpu;
+
+import java.io.IOException;
+
+/**
+ * Encodes a sequence of frames, e.g. into a video file. Frames are given as packed 0xAARRGGBB pixels, row by
+ * row from the top of the frame.
+ */
+public interface FrameEncoder extends AutoCloseable {
+
+    /**
+     * Encodes the next frame.
+     *
+     * @param pixels the packed pixels of the frame
+     * @throws IOException if the frame cannot be encoded
+     */
+    void encode(int[] pixels) throws IOException;
+
+    /**
+     * Finishes the encoded sequence and releases the encoder.
+     *
+     * @throws IOException if the sequence cannot be finished
+     */
+    @Override
+    void close() throws IOException;
+
+}
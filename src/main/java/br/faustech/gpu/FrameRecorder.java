@@ -0,0 +1,239 @@
+package br.faustech.gpu;
+
+import br.faustech.memory.FrameBuffer;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records every frame the guest swaps in, e.g. to a video file. A swap only copies the frame into a free
+ * buffer of a fixed pool and queues it; a separate thread encodes the queued frames and returns their buffers
+ * to the pool. When the encoder falls behind and the pool runs dry, the {@link Policy} decides whether the
+ * swap drops the frame, so the guest keeps its speed, or waits for a buffer, so the recording is complete.
+ */
+@Log
+public class FrameRecorder implements AutoCloseable {
+
+    /**
+     * What a swap does when every buffer is waiting to be encoded.
+     */
+    public enum Policy {
+        DROP,  // Drop the frame and count it, never slowing the guest down
+        BLOCK  // Wait until the encoder frees a buffer, keeping every frame
+    }
+
+    /**
+     * A pooled frame buffer and the time its frame was captured.
+     */
+    private static final class CapturedFrame {
+
+        private final int[] pixels; // The packed pixels of the frame
+
+        private long capturedAt; // System.nanoTime() when the frame was captured
+
+        private CapturedFrame(final int size) {
+
+            this.pixels = new int[size];
+        }
+
+    }
+
+    private static final CapturedFrame END = new CapturedFrame(0); // Queued to stop the encoder thread
+
+    private final FrameBuffer frameBuffer; // The framebuffer whose frames are recorded
+
+    private final FrameEncoder encoder; // Encodes the frames on the encoder thread
+
+    private final Policy policy; // What to do when the pool runs dry
+
+    private final BlockingQueue<CapturedFrame> free; // Buffers ready to capture a frame
+
+    private final BlockingQueue<CapturedFrame> queued; // Captured frames waiting to be encoded
+
+    private final Thread encoderThread; // Thread running the encoder
+
+    private final Runnable listener = this::capture; // Frame listener capturing every swap
+
+    private final AtomicLong captured = new AtomicLong(); // Frames queued for encoding
+
+    private final AtomicLong dropped = new AtomicLong(); // Frames not recorded
+
+    private final AtomicLong encoded = new AtomicLong(); // Frames encoded
+
+    private final AtomicLong totalLatency = new AtomicLong(); // Sum of capture-to-encoded times, in nanoseconds
+
+    private final AtomicLong maxLatency = new AtomicLong(); // Longest capture-to-encoded time, in nanoseconds
+
+    private volatile IOException failure; // First encoding error, after which frames are dropped
+
+    /**
+     * Constructs a recorder of the frames of a framebuffer. Call {@link #start()} to begin recording.
+     *
+     * @param frameBuffer the framebuffer whose frames are recorded
+     * @param encoder     the encoder the frames are handed to, closed with the recorder
+     * @param queueSize   the number of frames that can wait to be encoded
+     * @param policy      what a swap does when that many frames are waiting
+     */
+    public FrameRecorder(final FrameBuffer frameBuffer, final FrameEncoder encoder, final int queueSize,
+                         final Policy policy) {
+
+        if (queueSize < 1) {
+            throw new IllegalArgumentException(String.format("Invalid queue size: %d", queueSize));
+        }
+        this.frameBuffer = frameBuffer;
+        this.encoder = encoder;
+        this.policy = policy;
+        // One more buffer than the queue holds, for the frame being encoded
+        this.free = new ArrayBlockingQueue<>(queueSize + 1);
+        this.queued = new ArrayBlockingQueue<>(queueSize + 2);
+        for (int i = 0; i <= queueSize; i++) {
+            free.add(new CapturedFrame(frameBuffer.getWidth() * frameBuffer.getHeight()));
+        }
+        this.encoderThread = new Thread(this::encodeFrames, "frame-encoder");
+        this.encoderThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the encoder thread and captures the frames swapped in from now on.
+     */
+    public void start() {
+
+        encoderThread.start();
+        frameBuffer.addFrameListener(listener);
+    }
+
+    /**
+     * Captures the frame just swapped in. Runs on the swapping thread.
+     */
+    private void capture() {
+
+        CapturedFrame frame = free.poll();
+        if (frame == null && policy == Policy.BLOCK && failure == null) {
+            try {
+                frame = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Let the CPU thread see it and stop
+            }
+        }
+        if (frame == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        frameBuffer.copySwappedFrame(frame.pixels);
+        frame.capturedAt = System.nanoTime();
+        queued.add(frame);
+        captured.incrementAndGet();
+    }
+
+    /**
+     * Encodes queued frames until the recorder is closed. Runs on the encoder thread.
+     */
+    private void encodeFrames() {
+
+        while (true) {
+            final CapturedFrame frame;
+            try {
+                frame = queued.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == END) {
+                return;
+            }
+
+            if (failure == null) {
+                try {
+                    encoder.encode(frame.pixels);
+                    final long latency = System.nanoTime() - frame.capturedAt;
+                    totalLatency.addAndGet(latency);
+                    maxLatency.accumulateAndGet(latency, Math::max);
+                    encoded.incrementAndGet();
+                } catch (IOException e) {
+                    log.severe(String.format("Failed to encode frame: %s", e.getMessage()));
+                    failure = e;
+                    dropped.incrementAndGet();
+                }
+            } else {
+                dropped.incrementAndGet();
+            }
+            free.add(frame);
+        }
+    }
+
+    /**
+     * Stops capturing, waits until every queued frame is encoded and closes the encoder.
+     *
+     * @throws IOException          if a frame could not be encoded or the encoder cannot be closed
+     * @throws InterruptedException if interrupted while waiting for the encoder
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+
+        frameBuffer.removeFrameListener(listener);
+        if (encoderThread.isAlive()) {
+            queued.add(END);
+            encoderThread.join();
+        }
+        encoder.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the number of frames captured for encoding.
+     *
+     * @return the number of captured frames
+     */
+    public long getCapturedFrames() {
+
+        return captured.get();
+    }
+
+    /**
+     * Returns the number of frames that were not recorded, because the pool ran dry under {@link Policy#DROP}
+     * or encoding failed.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedFrames() {
+
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of frames encoded.
+     *
+     * @return the number of encoded frames
+     */
+    public long getEncodedFrames() {
+
+        return encoded.get();
+    }
+
+    /**
+     * Returns the average time from capturing a frame to having it encoded.
+     *
+     * @return the average latency in nanoseconds, or 0 if no frame was encoded
+     */
+    public long getAverageLatencyNanos() {
+
+        final long frames = encoded.get();
+        return frames == 0 ? 0 : totalLatency.get() / frames;
+    }
+
+    /**
+     * Returns the longest time from capturing a frame to having it encoded.
+     *
+     * @return the maximum latency in nanoseconds
+     */
+    public long getMaxLatencyNanos() {
+
+        return maxLatency.get();
+    }
+
+}
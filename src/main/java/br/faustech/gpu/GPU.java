@@ -1,23 +1,37 @@
 package br.faustech.gpu;
 
+import br.faustech.cpu.CPUInterrupt;
 import br.faustech.memory.FrameBuffer;
 import br.faustech.memory.MemoryException;
-import lombok.Getter;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.opengl.GL46;
 
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
- * Represents a GPU component that handles rendering operations.
+ * Represents a GPU component that handles rendering operations, presenting frames in a window on its own
+ * thread.
  */
-public class GPU extends RenderData {
+public class GPU extends RenderData implements Display {
+
+    private final CPUInterrupt cpu; // CPU that receives key press interrupts, or null
+
+    private volatile boolean closeRequested = false; // Set when the window must close, e.g. on ebreak
+
+    private final Object eventsLock = new Object(); // Keeps GLFW from terminating while another thread posts to it
+
+    private boolean eventsReady = false; // Whether GLFW is initialized, so the render loop can be woken
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean(); // Whether a wake-up waits for the render loop
+
+    private boolean redrawRequested = true; // Set when the window must be drawn again without a new frame
 
-    @Getter
-    private static int width;
+    private long presentedFrame = -1; // Sequence number of the frame on screen
 
-    @Getter
-    private static int height;
+    private final Runnable wakeUp = this::wakeUp; // Frame listener waking the render loop
 
-    private final FrameBuffer frameBuffer;
+    private final BitSet dirtyRows = new BitSet(); // Rows to upload in the current frame
 
     private ShaderProgram shaderProgram;
 
@@ -31,26 +45,103 @@ public class GPU extends RenderData {
      * @param frameBuffer the framebuffer to use for rendering.
      */
     public GPU(final int width, final int height, final FrameBuffer frameBuffer) {
-        super(width, height);
 
-        GPU.width = width;
-        GPU.height = height;
-        this.frameBuffer = frameBuffer;
+        this(width, height, frameBuffer, null);
+    }
+
+    /**
+     * Constructs a new GPU instance that forwards key presses in its window to a CPU.
+     *
+     * @param width       the width of the render window.
+     * @param height      the height of the render window.
+     * @param frameBuffer the framebuffer to use for rendering.
+     * @param cpu         the CPU that receives key press interrupts.
+     */
+    public GPU(final int width, final int height, final FrameBuffer frameBuffer, final CPUInterrupt cpu) {
+        super(width, height, frameBuffer);
+
+        this.cpu = cpu;
+    }
+
+    /**
+     * Starts the render thread, which opens the window.
+     */
+    @Override
+    public void open() {
+
+        start();
     }
 
     /**
-     * The main run loop of the GPU component, handling initialization and rendering.
+     * Asks the render loop to close the window and stop. Safe to call from any thread.
+     */
+    @Override
+    public void close() {
+
+        closeRequested = true;
+        postEmptyEvent();
+    }
+
+    /**
+     * Wakes the render loop after a swap, unless an earlier wake-up is still waiting for it. Runs on the
+     * swapping thread, so a guest swapping faster than the screen refreshes posts one event per rendered frame
+     * instead of one per swap.
+     */
+    private void wakeUp() {
+
+        if (wakeUpPending.compareAndSet(false, true)) {
+            postEmptyEvent();
+        }
+    }
+
+    /**
+     * Ends the wait of the render loop in {@link Window#waitEvents()}, if GLFW is up. Safe to call from any
+     * thread.
+     */
+    private void postEmptyEvent() {
+
+        synchronized (eventsLock) {
+            if (eventsReady) {
+                GLFW.glfwPostEmptyEvent();
+            }
+        }
+    }
+
+    /**
+     * Waits until the render thread has closed the window and stopped.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public void awaitClose() throws InterruptedException {
+
+        join();
+    }
+
+    /**
+     * The main run loop of the GPU component, handling initialization and rendering. The loop sleeps in
+     * {@link Window#waitEvents()} and only draws when the guest swapped in a new frame, which wakes it, or when
+     * the window needs to be drawn again.
      */
     @Override
     public void run() {
 
         init();
         while (isRunning()) {
-            try {
-                render();
-            } catch (MemoryException e) {
-                throw new RuntimeException(e);
+            // Cleared before reading the sequence, so a later swap wakes the loop again
+            wakeUpPending.set(false);
+            final long frame = frameBuffer.getFrameSequence();
+            if (frame != presentedFrame || redrawRequested) {
+                presentedFrame = frame;
+                redrawRequested = false;
+                try {
+                    render();
+                } catch (MemoryException e) {
+                    throw new RuntimeException(e);
+                }
             }
+            // A swap after the sequence was read posts an event, so it cannot be missed here
+            window.waitEvents();
         }
         cleanup();
     }
@@ -64,21 +155,32 @@ public class GPU extends RenderData {
             throw new IllegalStateException("Failed to initialize GLFW");
         }
 
-        window = new Window(width, height, "Emulator");
+        window = new Window(width, height, "Emulator", cpu);
         window.init();
         window.setIcon();
         GL46.glViewport(0, 0, width, height);
         window.setResizeCallback((ignore, newWidth, newHeight) -> {
             GL46.glViewport(0, 0, newWidth, newHeight);
+            redrawRequested = true;
         });
+        window.setRefreshCallback(ignore -> redrawRequested = true);
 
         shaderProgram = new ShaderProgram();
-        shaderProgram.loadShaders();
+        if (packed) {
+            shaderProgram.loadQuadShaders();
+        } else {
+            shaderProgram.loadShaders();
+        }
         shaderProgram.use();
 
         setup();
 
         GL46.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+
+        synchronized (eventsLock) {
+            eventsReady = true;
+        }
+        frameBuffer.addFrameListener(wakeUp);
     }
 
     /**
@@ -88,7 +190,7 @@ public class GPU extends RenderData {
      */
     private boolean isRunning() {
 
-        return !window.shouldClose();
+        return !closeRequested && !window.shouldClose();
     }
 
     /**
@@ -100,20 +202,34 @@ public class GPU extends RenderData {
 
         GL46.glClear(GL46.GL_COLOR_BUFFER_BIT | GL46.GL_DEPTH_BUFFER_BIT);
 
-        draw(frameBuffer.getRenderData());
+        // Upload only what changed since the last frame, and nothing when the guest did not draw
+        if (frameBuffer.takeDirtyRows(dirtyRows)) {
+            if (packed) {
+                updatePacked(dirtyRows);
+            } else {
+                update();
+            }
+        }
+        draw();
 
         window.swapBuffers();
-        window.pollEvents();
     }
 
     /**
      * Cleans up resources upon shutdown, ensuring graceful termination of GLFW and other components.
      */
     protected void cleanup() {
+
+        frameBuffer.removeFrameListener(wakeUp);
+        // A swap that still runs the listener, or a close, waits here or finds GLFW down, never terminated
+        synchronized (eventsLock) {
+            eventsReady = false;
+        }
         super.cleanup();
 
         shaderProgram.cleanup();
         window.cleanup();
+        GLFW.glfwTerminate();
     }
 
 }
@@ -0,0 +1,186 @@
+package br.faustech.gpu;
+
+import br.faustech.memory.FrameBuffer;
+import lombok.Getter;
+import org.lwjgl.util.xxhash.XXHash;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.LongPredicate;
+
+/**
+ * A display without a window or OpenGL, for tests, benchmarks and CI. Every swap is presented right away on
+ * the thread that swaps: the changed rows are copied into an image of the screen, the image is hashed, and
+ * selected frames are written to files as PNG or raw RGBA. Since nothing depends on timing, the same program
+ * run for the same number of instructions yields the same frames and hashes on every run.
+ */
+public class HeadlessDisplay implements Display {
+
+    /**
+     * The file formats frames can be dumped in.
+     */
+    public enum DumpFormat {
+        PNG, // A PNG image
+        RAW  // The bytes R, G, B and A of every pixel, row by row from the top
+    }
+
+    private final FrameBuffer frameBuffer; // The framebuffer whose frames are presented
+
+    private final int width, height; // Dimensions of the screen
+
+    private final ByteBuffer image; // The screen as packed little-endian pixels
+
+    private final IntBuffer pixels; // The screen seen as packed pixels
+
+    private final BitSet rows = new BitSet(); // Rows changed by the current frame
+
+    private final LongPredicate dumpFrame; // Selects the frames to dump by number, starting at 1
+
+    private final Path dumpDirectory; // Directory the dumped frames are written to
+
+    private final DumpFormat dumpFormat; // Format of the dumped frames
+
+    private final Runnable listener = this::present; // Frame listener presenting every swap
+
+    private final CountDownLatch closed = new CountDownLatch(1); // Released when the display is closed
+
+    @Getter
+    private volatile long frames; // Number of frames presented
+
+    @Getter
+    private volatile long lastFrameHash; // XXH3 hash of the image of the last frame
+
+    @Getter
+    private volatile long combinedHash; // Hash of all frames presented, each hash seeded with the one before
+
+    /**
+     * Constructs a headless display that hashes frames without dumping any.
+     *
+     * @param frameBuffer the framebuffer whose frames are presented
+     */
+    public HeadlessDisplay(final FrameBuffer frameBuffer) {
+
+        this(frameBuffer, frame -> false, null, DumpFormat.PNG);
+    }
+
+    /**
+     * Constructs a headless display that hashes frames and dumps the selected ones.
+     *
+     * @param frameBuffer   the framebuffer whose frames are presented
+     * @param dumpFrame     selects the frames to dump by number, starting at 1
+     * @param dumpDirectory the directory the dumped frames are written to, created if needed
+     * @param dumpFormat    the format of the dumped frames
+     */
+    public HeadlessDisplay(final FrameBuffer frameBuffer, final LongPredicate dumpFrame, final Path dumpDirectory,
+                           final DumpFormat dumpFormat) {
+
+        this.frameBuffer = frameBuffer;
+        this.width = frameBuffer.getWidth();
+        this.height = frameBuffer.getHeight();
+        this.image = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+        this.pixels = image.asIntBuffer();
+        this.dumpFrame = dumpFrame;
+        this.dumpDirectory = dumpDirectory;
+        this.dumpFormat = dumpFormat;
+    }
+
+    /**
+     * Starts presenting the frames swapped in from now on.
+     */
+    @Override
+    public void open() {
+
+        frameBuffer.addFrameListener(listener);
+    }
+
+    /**
+     * Stops presenting frames.
+     */
+    @Override
+    public void close() {
+
+        frameBuffer.removeFrameListener(listener);
+        closed.countDown();
+    }
+
+    /**
+     * Waits until the display is closed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public void awaitClose() throws InterruptedException {
+
+        closed.await();
+    }
+
+    /**
+     * Returns the packed pixel at a position of the last frame.
+     *
+     * @param x the column of the pixel
+     * @param y the row of the pixel
+     * @return the pixel as 0xAARRGGBB
+     */
+    public int getPixel(final int x, final int y) {
+
+        return pixels.get(y * width + x);
+    }
+
+    /**
+     * Presents the latest frame: updates the image with the changed rows, hashes it and dumps it if selected.
+     */
+    private void present() {
+
+        frameBuffer.takeDirtyRows(rows);
+        frameBuffer.copyPackedRows(pixels, 0, rows);
+
+        final long frame = frames + 1;
+        lastFrameHash = XXHash.XXH3_64bits(image);
+        combinedHash = XXHash.XXH3_64bits_withSeed(image, combinedHash);
+        frames = frame;
+
+        if (dumpFrame.test(frame)) {
+            dump(frame);
+        }
+    }
+
+    /**
+     * Writes the image of a frame to the dump directory.
+     *
+     * @param frame the number of the frame
+     */
+    private void dump(final long frame) {
+
+        final Path file = dumpDirectory.resolve(String.format("frame-%06d.%s", frame,
+                dumpFormat == DumpFormat.PNG ? "png" : "rgba"));
+        try {
+            Files.createDirectories(dumpDirectory);
+            final int[] argb = new int[width * height];
+            pixels.get(0, argb);
+            if (dumpFormat == DumpFormat.PNG) {
+                final BufferedImage picture = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                picture.setRGB(0, 0, width, height, argb, 0, width);
+                ImageIO.write(picture, "png", file.toFile());
+            } else {
+                // 0xAARRGGBB rotated left by 8 bits is 0xRRGGBBAA, which a big-endian buffer stores as R, G, B, A
+                final ByteBuffer rgba = ByteBuffer.allocate(argb.length * 4).order(ByteOrder.BIG_ENDIAN);
+                for (int pixel : argb) {
+                    rgba.putInt(Integer.rotateLeft(pixel, 8));
+                }
+                Files.write(file, rgba.array());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to dump frame %d to %s", frame, file), e);
+        }
+    }
+
+}
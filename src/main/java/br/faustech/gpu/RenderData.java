@@ -1,40 +1,73 @@
 package br.faustech.gpu;
 
-import br.faustech.comum.RenderDataDto;
 import br.faustech.memory.FrameBuffer;
 import lombok.extern.java.Log;
 import org.lwjgl.opengl.GL46;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.BitSet;
 
 /**
  * Handles the setup, updating, and drawing of render data for OpenGL.
+ * <p>
+ * Frames are uploaded through rings of slots in immutable buffers that stay mapped for the lifetime of the
+ * renderer. A frame is copied from the framebuffer straight into the next free slot and the GPU reads it from
+ * there; a fence per slot tells when the GPU is done with a slot so it can be written again.
  */
 @Log
 public abstract class RenderData extends Thread {
 
+    private static final int RING_SLOTS = 3; // Frames that can be in flight at once
+
+    private static final long FENCE_TIMEOUT = 1_000_000_000L; // Nanoseconds to wait for a slot per attempt
+
+    private static final int MAP_FLAGS = GL46.GL_MAP_WRITE_BIT | GL46.GL_MAP_PERSISTENT_BIT
+            | GL46.GL_MAP_COHERENT_BIT; // Flags of the persistent mappings
+
     protected final int width, height; // Dimensions for the texture
 
-    protected final int bufferSize = FrameBuffer.getBufferSize(); // Size of the buffer
+    protected final int bufferSize; // Size of the buffer
+
+    protected final int numVertices; // Number of vertices to draw
+
+    protected final boolean packed; // Whether the framebuffer is drawn as one packed texture on a quad
+
+    protected final FrameBuffer frameBuffer; // The framebuffer whose data is rendered
+
+    protected int vao, vbo, textureId, pbo; // OpenGL object identifiers
 
-    protected final int numVertices = bufferSize / 8; // Number of vertices to draw
+    private final int pixelSlotSize, vertexSlotSize; // Bytes of pixel and vertex data in a ring slot
 
-    protected int vao, vbo, textureId; // OpenGL object identifiers
+    private ByteBuffer pixelRing, vertexRing; // Persistent mappings of the PBO and VBO rings
 
-    protected int[] pboIds; // Array of Pixel Buffer Object identifiers
+    private IntBuffer pixelRingWords; // The PBO ring seen as packed pixels
 
-    protected int nextPboIndex = 0; // Index of the next PBO to use
+    private final long[] fences = new long[RING_SLOTS]; // Fence of the last frame that used each slot, or 0
+
+    private int slot; // Ring slot of the next upload
+
+    private int drawSlot = -1; // Ring slot holding the vertices of the frame on screen, or -1 before the first
 
     /**
      * Constructs a RenderData instance with specified texture dimensions.
      *
-     * @param width  the width of the texture
-     * @param height the height of the texture
+     * @param width       the width of the texture
+     * @param height      the height of the texture
+     * @param frameBuffer the framebuffer whose data is rendered
      */
-    public RenderData(final int width, final int height) {
+    public RenderData(final int width, final int height, final FrameBuffer frameBuffer) {
 
         this.width = width;
         this.height = height;
+        this.frameBuffer = frameBuffer;
+        this.bufferSize = frameBuffer.getBufferSize();
+        this.packed = frameBuffer.isPacked();
+        this.numVertices = packed ? 4 : bufferSize / 8;
+        this.pixelSlotSize = width * height * (packed ? Integer.BYTES : 4 * Float.BYTES);
+        this.vertexSlotSize = packed ? 0 : numVertices * 8 * Float.BYTES;
     }
 
     /**
@@ -44,10 +77,17 @@ public abstract class RenderData extends Thread {
 
         GL46.glEnable(GL46.GL_TEXTURE_2D);
         GL46.glPixelStorei(GL46.GL_UNPACK_ALIGNMENT, 4);
-        setupTexture();
-        setupVAOAndVBO();
-        setupPBOs();
-        GL46.glPointSize(4.0f);
+        if (packed) {
+            setupPackedTexture();
+            // The quad shader takes no vertex attributes, but a core profile draw still needs a VAO bound
+            vao = GL46.glGenVertexArrays();
+            GL46.glBindVertexArray(vao);
+        } else {
+            setupTexture();
+            setupVAOAndVBO();
+            GL46.glPointSize(4.0f);
+        }
+        setupPBO();
     }
 
     /**
@@ -65,7 +105,21 @@ public abstract class RenderData extends Thread {
     }
 
     /**
-     * Sets up the Vertex Array Object (VAO) and Vertex Buffer Object (VBO).
+     * Allocates an 8-bit RGBA texture for packed pixels.
+     */
+    private void setupPackedTexture() {
+
+        textureId = GL46.glGenTextures();
+        GL46.glBindTexture(GL46.GL_TEXTURE_2D, textureId);
+        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
+        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
+        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_NEAREST);
+        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_NEAREST);
+        GL46.glTexImage2D(GL46.GL_TEXTURE_2D, 0, GL46.GL_RGBA8, width, height, 0, GL46.GL_BGRA, GL46.GL_UNSIGNED_BYTE, (IntBuffer) null);
+    }
+
+    /**
+     * Sets up the Vertex Array Object (VAO) and a Vertex Buffer Object (VBO) holding a ring of vertex slots.
      */
     private void setupVAOAndVBO() {
 
@@ -73,62 +127,144 @@ public abstract class RenderData extends Thread {
         GL46.glBindVertexArray(vao);
         vbo = GL46.glGenBuffers();
         GL46.glBindBuffer(GL46.GL_ARRAY_BUFFER, vbo);
+        GL46.glBufferStorage(GL46.GL_ARRAY_BUFFER, (long) vertexSlotSize * RING_SLOTS, MAP_FLAGS);
+        vertexRing = map(GL46.GL_ARRAY_BUFFER, vertexSlotSize);
 
-        int stride = 8 * Float.BYTES;
-        GL46.glVertexAttribPointer(0, 2, GL46.GL_FLOAT, false, stride, 0);
         GL46.glEnableVertexAttribArray(0);
-        GL46.glVertexAttribPointer(1, 4, GL46.GL_FLOAT, false, stride, 2 * Float.BYTES);
         GL46.glEnableVertexAttribArray(1);
-        GL46.glVertexAttribPointer(2, 2, GL46.GL_FLOAT, false, stride, 6 * Float.BYTES);
         GL46.glEnableVertexAttribArray(2);
     }
 
     /**
-     * Sets up the Pixel Buffer Objects (PBOs) for efficient texture streaming.
+     * Sets up the Pixel Buffer Object (PBO) holding a ring of pixel slots for texture streaming.
      */
-    private void setupPBOs() {
-
-        int pboCount = 2;
-        pboIds = new int[pboCount];
-        GL46.glGenBuffers(pboIds);
-        for (int i = 0; i < pboCount; i++) {
-            GL46.glBindBuffer(GL46.GL_PIXEL_UNPACK_BUFFER, pboIds[i]);
-            GL46.glBufferData(GL46.GL_PIXEL_UNPACK_BUFFER, bufferSize, GL46.GL_STREAM_DRAW);
-        }
+    private void setupPBO() {
+
+        pbo = GL46.glGenBuffers();
+        GL46.glBindBuffer(GL46.GL_PIXEL_UNPACK_BUFFER, pbo);
+        GL46.glBufferStorage(GL46.GL_PIXEL_UNPACK_BUFFER, (long) pixelSlotSize * RING_SLOTS, MAP_FLAGS);
+        pixelRing = map(GL46.GL_PIXEL_UNPACK_BUFFER, pixelSlotSize);
+        pixelRingWords = pixelRing.asIntBuffer();
     }
 
     /**
-     * Draws the vertex data and updates the texture.
+     * Maps the whole storage of a buffer for writing, persistently and coherently.
      *
-     * @param dataDto the object containing the vertex and pixel data
+     * @param target   the target the buffer is bound to
+     * @param slotSize the size of one ring slot
+     * @return the mapping
+     */
+    private static ByteBuffer map(final int target, final int slotSize) {
+
+        final ByteBuffer mapping = GL46.glMapBufferRange(target, 0, (long) slotSize * RING_SLOTS, MAP_FLAGS);
+        if (mapping == null) {
+            throw new IllegalStateException("Failed to map buffer storage");
+        }
+        return mapping.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Waits until the GPU no longer reads the slot of the next upload.
+     */
+    private void awaitSlot() {
+
+        final long fence = fences[slot];
+        if (fence == 0) {
+            return;
+        }
+        int status;
+        do {
+            status = GL46.glClientWaitSync(fence, GL46.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+        } while (status == GL46.GL_TIMEOUT_EXPIRED);
+        if (status == GL46.GL_WAIT_FAILED) {
+            log.warning("Waiting for a frame upload slot failed");
+        }
+        GL46.glDeleteSync(fence);
+        fences[slot] = 0;
+    }
+
+    /**
+     * Copies the front buffer of the framebuffer into the next ring slot and updates the texture and the
+     * vertices from it.
      */
-    protected void draw(RenderDataDto dataDto) {
-        // Update the VBO with new data
+    protected void update() {
+
+        awaitSlot();
+        final int pixelOffset = slot * pixelSlotSize;
+        final int vertexOffset = slot * vertexSlotSize;
+        frameBuffer.copyFront(pixelRing, pixelOffset, vertexRing, vertexOffset);
+
+        // Point the vertex attributes at the slot
         GL46.glBindBuffer(GL46.GL_ARRAY_BUFFER, vbo);
-        GL46.glBufferData(GL46.GL_ARRAY_BUFFER, dataDto.vertex(), GL46.GL_STREAM_DRAW);
+        int stride = 8 * Float.BYTES;
+        GL46.glVertexAttribPointer(0, 2, GL46.GL_FLOAT, false, stride, vertexOffset);
+        GL46.glVertexAttribPointer(1, 4, GL46.GL_FLOAT, false, stride, vertexOffset + 2 * Float.BYTES);
+        GL46.glVertexAttribPointer(2, 2, GL46.GL_FLOAT, false, stride, vertexOffset + 6 * Float.BYTES);
 
-        int pboId = pboIds[nextPboIndex];
-        nextPboIndex = (nextPboIndex + 1) % pboIds.length;
+        GL46.glTexSubImage2D(GL46.GL_TEXTURE_2D, 0, 0, 0, width, height, GL46.GL_RGBA, GL46.GL_FLOAT, pixelOffset);
+        drawSlot = slot;
+    }
 
-        GL46.glBindBuffer(GL46.GL_PIXEL_UNPACK_BUFFER, pboId);
-        GL46.glBufferData(GL46.GL_PIXEL_UNPACK_BUFFER, dataDto.pixel(), GL46.GL_STREAM_DRAW);
+    /**
+     * Copies the changed rows of packed pixels into the next ring slot and uploads them to the texture from
+     * there, one glTexSubImage2D per run of consecutive rows. A packed pixel 0xAARRGGBB is laid out in memory
+     * as the bytes B, G, R, A on little-endian hosts, hence GL_BGRA.
+     *
+     * @param rows the rows to upload
+     */
+    protected void updatePacked(final BitSet rows) {
 
-        GL46.glUnmapBuffer(GL46.GL_PIXEL_UNPACK_BUFFER);
+        awaitSlot();
+        final int pixelOffset = slot * pixelSlotSize;
+        frameBuffer.copyPackedRows(pixelRingWords, pixelOffset / Integer.BYTES, rows);
 
-        GL46.glTexSubImage2D(GL46.GL_TEXTURE_2D, 0, 0, 0, width, height, GL46.GL_RGBA, GL46.GL_FLOAT, 0);
+        for (int first = rows.nextSetBit(0); first >= 0; first = rows.nextSetBit(first)) {
+            final int end = rows.nextClearBit(first);
+            GL46.glTexSubImage2D(GL46.GL_TEXTURE_2D, 0, 0, first, width, end - first, GL46.GL_BGRA, GL46.GL_UNSIGNED_BYTE,
+                    pixelOffset + (long) first * width * Integer.BYTES);
+            first = end;
+        }
+        drawSlot = slot;
+    }
 
-        GL46.glGenerateMipmap(GL46.GL_TEXTURE_2D);
+    /**
+     * Draws the last uploaded frame: one point per pixel, or one quad in packed mode. The fence of the slot
+     * the frame came from moves after the draw, and when this frame uploaded the slot the ring moves on.
+     */
+    protected void draw() {
 
-        GL46.glDrawArrays(GL46.GL_POINTS, 0, numVertices);
+        if (drawSlot < 0) {
+            return;
+        }
+        GL46.glDrawArrays(packed ? GL46.GL_TRIANGLE_STRIP : GL46.GL_POINTS, 0, numVertices);
+
+        if (fences[drawSlot] != 0) {
+            GL46.glDeleteSync(fences[drawSlot]);
+        }
+        fences[drawSlot] = GL46.glFenceSync(GL46.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        if (drawSlot == slot) {
+            slot = (slot + 1) % RING_SLOTS;
+        }
     }
 
     /**
      * Cleans up resources upon shutdown, ensuring graceful termination of GLFW and other components.
      */
     protected void cleanup() {
-        GL46.glDeleteBuffers(vbo);
+        for (long fence : fences) {
+            if (fence != 0) {
+                GL46.glDeleteSync(fence);
+            }
+        }
+        GL46.glBindBuffer(GL46.GL_PIXEL_UNPACK_BUFFER, pbo);
+        GL46.glUnmapBuffer(GL46.GL_PIXEL_UNPACK_BUFFER);
+        GL46.glDeleteBuffers(pbo);
+        if (vbo != 0) {
+            GL46.glBindBuffer(GL46.GL_ARRAY_BUFFER, vbo);
+            GL46.glUnmapBuffer(GL46.GL_ARRAY_BUFFER);
+            GL46.glDeleteBuffers(vbo);
+        }
         GL46.glDeleteVertexArrays(vao);
         GL46.glDeleteTextures(textureId);
-        GL46.glDeleteBuffers(pboIds);
     }
 }
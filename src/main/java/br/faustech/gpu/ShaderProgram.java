@@ -43,6 +43,46 @@ public class ShaderProgram {
                      }
                 """);
 
+        link(vertexShader, fragmentShader);
+    }
+
+    /**
+     * Loads the shaders that draw a texture over the whole viewport with one quad. The quad needs no vertex
+     * data: its corners are derived from the vertex index of a four-vertex triangle strip.
+     */
+    public void loadQuadShaders() {
+        // Compile the vertex shader
+        int vertexShader = compileShader(GL46.GL_VERTEX_SHADER, """
+                    #version 460
+                     out vec2 TexCoord;
+                     void main() {
+                         vec2 corner = vec2(gl_VertexID & 1, gl_VertexID >> 1);
+                         gl_Position = vec4(corner * 2.0 - 1.0, 0.0, 1.0);
+                         TexCoord = vec2(corner.x, 1.0 - corner.y); // The first texture row is the top of the frame
+                     }
+                """);
+
+        // Compile the fragment shader
+        int fragmentShader = compileShader(GL46.GL_FRAGMENT_SHADER, """
+                    #version 460
+                     in vec2 TexCoord;
+                     out vec4 FragColor;
+                     uniform sampler2D ourTexture;
+                     void main() {
+                         FragColor = texture(ourTexture, TexCoord);
+                     }
+                """);
+
+        link(vertexShader, fragmentShader);
+    }
+
+    /**
+     * Links compiled shaders into the shader program and deletes them.
+     *
+     * @param vertexShader   The compiled vertex shader.
+     * @param fragmentShader The compiled fragment shader.
+     */
+    private void link(int vertexShader, int fragmentShader) {
         // Create the shader program and attach the compiled shaders
         programId = GL46.glCreateProgram();
         GL46.glAttachShader(programId, vertexShader);
@@ -2,7 +2,6 @@ package br.faustech.gpu;
 
 import br.faustech.bus.Bus;
 import br.faustech.memory.FrameBuffer;
-import br.faustech.memory.Memory;
 import br.faustech.memory.MemoryException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
@@ -104,7 +103,7 @@ public class VideoFrameToVertexArray extends Thread {
                 address += 4;
             }
         }
-        bus.write(Memory.getMemorySize(), new int[]{0}); // Swap frame buffer
+        bus.write(bus.getMemory().getMemorySize(), new int[]{0}); // Swap frame buffer
     }
 
     /**
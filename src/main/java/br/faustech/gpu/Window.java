@@ -7,6 +7,7 @@ import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWFramebufferSizeCallbackI;
 import org.lwjgl.glfw.GLFWImage;
 import org.lwjgl.glfw.GLFWVidMode;
+import org.lwjgl.glfw.GLFWWindowRefreshCallbackI;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.stb.STBImage;
 import org.lwjgl.system.MemoryStack;
@@ -27,8 +28,9 @@ public class Window {
 
     private final String title; // Title of the window
 
-    @Getter
-    private static long window; // Native handle to the GLFW window
+    private final CPUInterrupt cpu; // CPU that receives key press interrupts, or null
+
+    private long window; // Native handle to the GLFW window
 
     /**
      * Initializes and creates a window. Throws IllegalStateException if window creation fails.
@@ -56,9 +58,9 @@ public class Window {
 
         // Set key callback
         GLFW.glfwSetKeyCallback(window, (window, key, scancode, action, mods) -> {
-            if (CPUInterrupt.isInterruptEnabled() && action == GLFW.GLFW_PRESS) {
-                CPUInterrupt.setKeyPressedFlag(true);
-                CPUInterrupt.setInterruptData(key);
+            if (cpu != null && cpu.isInterruptEnabled() && action == GLFW.GLFW_PRESS) {
+                cpu.setInterruptData(key);
+                cpu.setKeyPressedFlag(true);
             }
         });
     }
@@ -73,6 +75,16 @@ public class Window {
         GLFW.glfwSetFramebufferSizeCallback(window, callback);
     }
 
+    /**
+     * Sets a callback for when the contents of the window are damaged and must be drawn again.
+     *
+     * @param callback A callback to handle window refresh requests.
+     */
+    public void setRefreshCallback(GLFWWindowRefreshCallbackI callback) {
+
+        GLFW.glfwSetWindowRefreshCallback(window, callback);
+    }
+
     /**
      * Sets the window icon.
      */
@@ -121,6 +133,15 @@ public class Window {
         GLFW.glfwPollEvents();
     }
 
+    /**
+     * Sleeps until at least one GLFW event arrives, then processes all pending events. Other threads can end
+     * the wait with {@link GLFW#glfwPostEmptyEvent()}.
+     */
+    public void waitEvents() {
+
+        GLFW.glfwWaitEvents();
+    }
+
     /**
      * Destroys the window and releases resources.
      */
@@ -0,0 +1,268 @@
+package br.faustech.memory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * A memory whose contents live off-heap in a direct buffer allocated up front, and are accessed as
+ * little-endian 8, 16 and 32-bit values, like RISC-V memory, without allocating.
+ */
+public class DenseMemory extends Memory {
+
+    private static final VarHandle SHORT = MethodHandles.byteBufferViewVarHandle(short[].class,
+            ByteOrder.LITTLE_ENDIAN); // Little-endian halfword access, aligned or not
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN); // Little-endian word access, aligned or not
+
+    private static final byte[] ZEROS = new byte[4096]; // Source for clearing memory in bulk
+
+    private final ByteBuffer memory; // Off-heap memory to store data
+
+    /**
+     * Constructs a memory component with specified size. The memory is allocated off-heap, so large sizes are
+     * limited by -XX:MaxDirectMemorySize rather than by the heap.
+     *
+     * @param memorySize The size of the memory to allocate.
+     */
+    public DenseMemory(final int memorySize) {
+
+        super(memorySize);
+        this.memory = ByteBuffer.allocateDirect(memorySize); // Allocate memory, zero-filled
+    }
+
+    /**
+     * Returns the number of bytes of host memory backing this memory. The whole memory is allocated up front.
+     *
+     * @return the resident size in bytes
+     */
+    @Override
+    public long getResidentBytes() {
+
+        return getMemorySize();
+    }
+
+    /**
+     * Writes data to memory at a specified position.
+     *
+     * @param beginDataPosition The starting position in memory to write data.
+     * @param value             The data to be written as byte array.
+     * @throws MemoryException If the memory is not writable or overflow occurs.
+     */
+    @Override
+    public void write(final int beginDataPosition, final byte[] value) throws MemoryException {
+
+        if (beginDataPosition < 0 || beginDataPosition + value.length > getMemorySize()) {
+            throw new MemoryException(String.format("Memory overflow at position %d",
+                    Math.max(beginDataPosition, getMemorySize())));
+        }
+
+        this.memory.put(beginDataPosition, value);
+        notifyWrite(beginDataPosition, beginDataPosition + value.length);
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to memory at a specified position, without changing the buffer's
+     * position. This is how mapped files are copied into memory in bulk.
+     *
+     * @param beginDataPosition The starting position in memory to write data.
+     * @param value             The data to be written.
+     * @throws MemoryException If overflow occurs.
+     */
+    @Override
+    public void write(final int beginDataPosition, final ByteBuffer value) throws MemoryException {
+
+        final int length = value.remaining();
+        if (beginDataPosition < 0 || beginDataPosition + length > getMemorySize()) {
+            throw new MemoryException(String.format("Memory overflow at position %d",
+                    Math.max(beginDataPosition, getMemorySize())));
+        }
+
+        this.memory.put(beginDataPosition, value, value.position(), length);
+        notifyWrite(beginDataPosition, beginDataPosition + length);
+    }
+
+    /**
+     * Sets a range of memory to zero.
+     *
+     * @param beginDataPosition The first position to clear.
+     * @param endDataPosition   The position after the last one to clear.
+     * @throws MemoryException If the range is outside memory.
+     */
+    @Override
+    public void clear(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+
+        if (beginDataPosition < 0 || endDataPosition > getMemorySize() || endDataPosition < beginDataPosition) {
+            throw new MemoryException("Invalid range specified");
+        }
+
+        for (int i = beginDataPosition; i < endDataPosition; i += ZEROS.length) {
+            this.memory.put(i, ZEROS, 0, Math.min(ZEROS.length, endDataPosition - i));
+        }
+        notifyWrite(beginDataPosition, endDataPosition);
+    }
+
+    /**
+     * Writes integer data to memory as consecutive little-endian words.
+     *
+     * @param beginDataPosition The start position in the memory.
+     * @param value             The integer array to write.
+     * @throws MemoryException If the memory is not writable or if overflow occurs.
+     */
+    @Override
+    public void writeFromInt(final int beginDataPosition, final int[] value) throws MemoryException {
+
+        final int length = value.length * 4; // Calculate byte length from int length
+        if (beginDataPosition < 0 || beginDataPosition + length > getMemorySize()) {
+            throw new MemoryException(String.format("Memory overflow at position %d", beginDataPosition + length - 1));
+        }
+
+        for (int i = 0; i < value.length; i++) {
+            INT.set(this.memory, beginDataPosition + i * 4, value[i]);
+        }
+        notifyWrite(beginDataPosition, beginDataPosition + length);
+    }
+
+    /**
+     * Reads a byte from memory.
+     *
+     * @param address The position of the byte.
+     * @return The byte read, zero-extended.
+     * @throws MemoryException If the byte is outside memory.
+     */
+    @Override
+    public int load8(final int address) throws MemoryException {
+
+        checkAccess(address, 1);
+        return this.memory.get(address) & 0xFF;
+    }
+
+    /**
+     * Reads a little-endian halfword from memory.
+     *
+     * @param address The position of the first byte of the halfword.
+     * @return The halfword read, zero-extended.
+     * @throws MemoryException If the halfword is outside memory.
+     */
+    @Override
+    public int load16(final int address) throws MemoryException {
+
+        checkAccess(address, 2);
+        return (short) SHORT.get(this.memory, address) & 0xFFFF;
+    }
+
+    /**
+     * Reads a little-endian word from memory.
+     *
+     * @param address The position of the first byte of the word.
+     * @return The word read.
+     * @throws MemoryException If the word is outside memory.
+     */
+    @Override
+    public int load32(final int address) throws MemoryException {
+
+        checkAccess(address, 4);
+        return (int) INT.get(this.memory, address);
+    }
+
+    /**
+     * Writes a byte to memory.
+     *
+     * @param address The position of the byte.
+     * @param value   The value whose low 8 bits are written.
+     * @throws MemoryException If the byte is outside memory.
+     */
+    @Override
+    public void store8(final int address, final int value) throws MemoryException {
+
+        checkAccess(address, 1);
+        this.memory.put(address, (byte) value);
+        notifyWrite(address, address + 1);
+    }
+
+    /**
+     * Writes a little-endian halfword to memory.
+     *
+     * @param address The position of the first byte of the halfword.
+     * @param value   The value whose low 16 bits are written.
+     * @throws MemoryException If the halfword is outside memory.
+     */
+    @Override
+    public void store16(final int address, final int value) throws MemoryException {
+
+        checkAccess(address, 2);
+        SHORT.set(this.memory, address, (short) value);
+        notifyWrite(address, address + 2);
+    }
+
+    /**
+     * Writes a little-endian word to memory.
+     *
+     * @param address The position of the first byte of the word.
+     * @param value   The word to write.
+     * @throws MemoryException If the word is outside memory.
+     */
+    @Override
+    public void store32(final int address, final int value) throws MemoryException {
+
+        checkAccess(address, 4);
+        INT.set(this.memory, address, value);
+        notifyWrite(address, address + 4);
+    }
+
+    /**
+     * Reads a range of bytes from memory.
+     *
+     * @param beginDataPosition The start position in memory to read.
+     * @param endDataPosition   The end position in memory to read.
+     * @return Array of bytes read from memory.
+     * @throws MemoryException If the specified range is invalid.
+     */
+    @Override
+    public byte[] read(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+
+        checkRange(beginDataPosition, endDataPosition);
+
+        byte[] value = new byte[endDataPosition - beginDataPosition];
+        this.memory.get(beginDataPosition, value);
+        return value;
+    }
+
+    /**
+     * Reads a range of memory as consecutive little-endian words.
+     *
+     * @param beginDataPosition The start position in memory to read.
+     * @param endDataPosition   The end position in memory to read.
+     * @return Array of integers read from memory.
+     * @throws MemoryException If the specified range is invalid.
+     */
+    @Override
+    public int[] readAsInt(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+
+        checkRange(beginDataPosition, endDataPosition);
+
+        int[] intArray = new int[(endDataPosition - beginDataPosition) / 4]; // Calculate number of integers
+        for (int i = 0; i < intArray.length; i++) {
+            intArray[i] = (int) INT.get(this.memory, beginDataPosition + i * 4);
+        }
+
+        return intArray;
+    }
+
+    /**
+     * Computes a CRC-32 checksum of the whole memory, e.g. to compare the final state of two runs.
+     *
+     * @return the checksum of the memory contents
+     */
+    @Override
+    public long checksum() {
+
+        final CRC32 crc = new CRC32();
+        crc.update(this.memory.duplicate().clear());
+        return crc.getValue();
+    }
+
+}
@@ -1,23 +1,87 @@
 package br.faustech.memory;
 
+import br.faustech.comum.Device;
 import br.faustech.comum.RenderDataDto;
-import br.faustech.gpu.GPU;
 import lombok.Getter;
 import lombok.extern.java.Log;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A class representing a framebuffer that manages two buffers for double buffering.
+ * A class representing a framebuffer that manages two buffers for double buffering. On the bus, the first
+ * word is the swap register and the pixels follow it.
+ * <p>
+ * By default every pixel is kept as four color floats and an eight-float vertex, which the renderer draws as
+ * one point per pixel. In packed mode every pixel is a single 32-bit word instead, 0xAARRGGBB, which the
+ * renderer uploads as an 8-bit BGRA texture and draws with one textured quad.
+ * <p>
+ * A packed framebuffer is triple buffered without locks. The guest draws into the back buffer, a swap
+ * publishes it as the latest frame and hands the guest the spare buffer in one atomic exchange, and the
+ * renderer takes the latest frame with another exchange whenever it draws, so neither thread ever waits for
+ * the other. The buffers also track which rows are written: the back buffer behaves as a canvas the guest
+ * keeps drawing on, since a swap brings the spare buffer up to date by copying only the rows written since
+ * it was last published, and {@link #takeDirtyRows(BitSet)} hands the renderer just the rows changed since
+ * the frame it took before. The float framebuffer is double buffered under the framebuffer lock instead.
  */
 @Log
-public class FrameBuffer {
+public class FrameBuffer implements Device {
+
+    private static final VarHandle FLOATS = MethodHandles.byteArrayViewVarHandle(float[].class,
+            ByteOrder.nativeOrder()); // Float access to the byte buffers, in the order the GPU reads them
+
+    @Getter
+    private final int bufferSize; // Size of each buffer
 
     @Getter
-    private static int bufferSize; // Size of each buffer
+    private final int width; // Width of the frame in pixels
+
+    @Getter
+    private final int height; // Height of the frame in pixels
+
+    private static final int HISTORY = 8; // Frames whose written rows are kept to bring buffers up to date
+
+    private static final int FRESH = 4; // Set in the exchange while the renderer has not taken the latest frame
+
+    private static final int INDEX_MASK = 3; // Buffer index part of the exchange
+
+    @Getter
+    private final boolean packed; // Whether pixels are stored as packed 32-bit words
+
+    private int[][] packedBuffers; // The three packed buffers
+
+    private long[] bufferFrames; // Number of the frame each packed buffer holds
+
+    private AtomicInteger exchange; // Index of the buffer holding the latest frame, with FRESH
+
+    private long[][] history; // Rows written in each of the last frames, as bit words, by frame % HISTORY
+
+    private volatile long publishedFrame; // Number of the last frame whose rows are in the history
+
+    private volatile long frameSequence; // Number of frames swapped in, raised once a frame can be taken
+
+    private volatile Runnable[] frameListeners = new Runnable[0]; // Called on the CPU thread after every swap
+
+    private int back; // Packed buffer the guest draws into, owned by the CPU thread
+
+    private long[] writtenRows; // Rows of the back buffer written since the last swap, as bit words
+
+    private long[] staleRows; // Rows to copy into the spare buffer on a swap, as bit words
+
+    private int front; // Packed buffer the renderer reads, owned by the render thread
+
+    private long takenFrame = -1; // Number of the frame the renderer took last, or -1 before the first
+
+    private long[] takenRows; // Rows changed between two frames taken by the renderer, as bit words
+
+    private boolean swapped = true; // Whether the float front buffer changed since the renderer took it
 
     private byte[] frontPixelBuffer; // Buffer to store pixel data
 
@@ -28,52 +92,147 @@ public class FrameBuffer {
     private byte[] backVertexBuffer; // Buffer to write new data to
 
     /**
-     * Constructs a FrameBuffer with specified memory addresses and buffer size.
+     * Constructs a FrameBuffer for frames of the specified dimensions, with 4 bytes per pixel.
      *
-     * @param bufferSize The size of each buffer.
+     * @param width  The width of the frame in pixels.
+     * @param height The height of the frame in pixels.
      */
-    public FrameBuffer(final int bufferSize) {
+    public FrameBuffer(final int width, final int height) {
+
+        this(width, height, false);
+    }
 
+    /**
+     * Constructs a FrameBuffer for frames of the specified dimensions, optionally storing every pixel as one
+     * packed word. A packed framebuffer takes 12 bytes per pixel for its three buffers instead of 128.
+     *
+     * @param width  The width of the frame in pixels.
+     * @param height The height of the frame in pixels.
+     * @param packed Whether to store pixels as packed 32-bit words.
+     */
+    public FrameBuffer(final int width, final int height, final boolean packed) {
+
+        this.width = width;
+        this.height = height;
+        this.packed = packed;
+        if (packed) {
+            final int words = (height + 63) / 64;
+            this.packedBuffers = new int[3][width * height];
+            this.bufferFrames = new long[3];
+            this.history = new long[HISTORY][words];
+            this.writtenRows = new long[words];
+            this.staleRows = new long[words];
+            this.takenRows = new long[words];
+            this.back = 0;
+            this.exchange = new AtomicInteger(1);
+            this.front = 2;
+            this.bufferSize = width * height * 4;
+            return;
+        }
+        final int bufferSize = width * height * 4;
         final int size = bufferSize * 8;
         this.frontPixelBuffer = new byte[size];  // Initialize pixel buffer
         this.backPixelBuffer = new byte[size];  // Initialize pixel buffer
         this.frontVertexBuffer = new byte[size];  // Initialize front buffer
         this.backVertexBuffer = new byte[size];   // Initialize back buffer
-        FrameBuffer.bufferSize = bufferSize * 2;
+        this.bufferSize = bufferSize * 2;
     }
 
     /**
-     * Writes pixel data to the back buffer starting from a specified position.
+     * Reads a pixel word through the bus. The swap register cannot be read.
      *
-     * @param beginAddress The starting position in the back buffer.
-     * @param data         The pixel data as an array of integers.
-     * @throws MemoryException If the write operation exceeds buffer limits.
+     * @param offset the offset of the word from the base address of the framebuffer
+     * @return the value of the word
+     * @throws MemoryException if the offset is the swap register or outside the buffer
      */
-    public void writePixel(int beginAddress, final int[] data) throws MemoryException {
+    @Override
+    public int read(final int offset) throws MemoryException {
 
-        int width = GPU.getWidth();
-        int height = GPU.getHeight();
+        if (offset < 4) {
+            throw new MemoryException("Invalid address");
+        }
+        if (packed) {
+            return packedBuffers[back][checkPixelIndex((offset - 4) / 4)];
+        }
+        return readFromPixelBufferAsInts(offset - 4, offset - 3)[0];
+    }
 
-        for (int i = 0; i < data.length; i++) {
-            int color = data[i];
+    /**
+     * Writes a word through the bus: any write to the swap register swaps the buffers, and other words are
+     * pixels.
+     *
+     * @param offset the offset of the word from the base address of the framebuffer
+     * @param value  the value of the word
+     * @throws MemoryException if the offset is outside the buffer
+     */
+    @Override
+    public void write(final int offset, final int value) throws MemoryException {
 
-            // Calculate normalized coordinates for texture mapping
-            int x = ((beginAddress / 4) + (i * 4)) % width;
-            int y = ((beginAddress / 4) + (i * 4)) / width;
+        if (offset < 4) {
+            swap();
+        } else {
+            writePixel(offset - 4, value);
+        }
+    }
 
-            float normX = (x / (float) width) * 2 - 1;
-            float normY = ((height - y) / (float) height) * 2 - 1;
+    /**
+     * Writes pixel data to the back buffer starting from a specified position, one pixel per word.
+     *
+     * @param beginAddress The starting position in the back buffer.
+     * @param data         The pixel data as an array of integers.
+     * @throws MemoryException If the write operation exceeds buffer limits.
+     */
+    public void writePixel(final int beginAddress, final int[] data) throws MemoryException {
 
-            float r = ((color >> 16) & 0xFF) / 255.0f;
-            float g = ((color >> 8) & 0xFF) / 255.0f;
-            float b = (color & 0xFF) / 255.0f;
-            float u = x / (float) width;
-            float v = y / (float) height;
+        for (int i = 0; i < data.length; i++) {
+            writePixel(beginAddress + i * 4, data[i]);
+        }
+    }
 
-            this.writeToPixelBufferFromFloats(beginAddress * 4, new float[]{r, g, b, 1});
+    /**
+     * Writes one pixel to the back buffer. The color goes straight into the preallocated buffers, so this
+     * allocates nothing.
+     *
+     * @param address The position of the pixel word in the back buffer.
+     * @param color   The color of the pixel, as 0xRRGGBB.
+     * @throws MemoryException If the pixel lies outside the buffer.
+     */
+    public void writePixel(final int address, final int color) throws MemoryException {
+
+        if (packed) {
+            final int index = checkPixelIndex(address / 4);
+            final int row = index / width;
+            packedBuffers[back][index] = 0xFF000000 | color;
+            writtenRows[row >>> 6] |= 1L << row;
+            return;
+        }
 
-            this.writeToVertexBufferFromFloats((y * width + x) * 32, new float[]{normX, normY, r, g, b, 1, u, v});
+        // Calculate normalized coordinates for texture mapping
+        final int x = (address / 4) % width;
+        final int y = (address / 4) / width;
+        final int pixelOffset = address * 4;
+        final int vertexOffset = (y * width + x) * 32;
+        if (address < 0 || pixelOffset > backPixelBuffer.length - 16 || vertexOffset > backVertexBuffer.length - 32) {
+            throw new MemoryException(String.format("Invalid pixel address: %d", address));
         }
+
+        final float r = ((color >> 16) & 0xFF) / 255.0f;
+        final float g = ((color >> 8) & 0xFF) / 255.0f;
+        final float b = (color & 0xFF) / 255.0f;
+
+        FLOATS.set(backPixelBuffer, pixelOffset, r);
+        FLOATS.set(backPixelBuffer, pixelOffset + 4, g);
+        FLOATS.set(backPixelBuffer, pixelOffset + 8, b);
+        FLOATS.set(backPixelBuffer, pixelOffset + 12, 1.0f);
+
+        FLOATS.set(backVertexBuffer, vertexOffset, (x / (float) width) * 2 - 1);
+        FLOATS.set(backVertexBuffer, vertexOffset + 4, ((height - y) / (float) height) * 2 - 1);
+        FLOATS.set(backVertexBuffer, vertexOffset + 8, r);
+        FLOATS.set(backVertexBuffer, vertexOffset + 12, g);
+        FLOATS.set(backVertexBuffer, vertexOffset + 16, b);
+        FLOATS.set(backVertexBuffer, vertexOffset + 20, 1.0f);
+        FLOATS.set(backVertexBuffer, vertexOffset + 24, x / (float) width);
+        FLOATS.set(backVertexBuffer, vertexOffset + 28, y / (float) height);
     }
 
     /**
@@ -135,17 +294,287 @@ public class FrameBuffer {
     }
 
     /**
-     * Swaps the front and back buffers, promoting the back to front for display.
+     * Checks that a pixel index lies within the frame.
+     *
+     * @param index The index of the pixel.
+     * @return The index.
+     * @throws MemoryException If the index is outside the frame.
+     */
+    private int checkPixelIndex(final int index) throws MemoryException {
+
+        if (index < 0 || index >= width * height) {
+            throw new MemoryException(String.format("Invalid pixel index: %d", index));
+        }
+        return index;
+    }
+
+    /**
+     * Swaps the front and back buffers, promoting the back to front for display. A packed framebuffer
+     * publishes the back buffer as the latest frame and continues in the spare buffer, after copying into it
+     * the rows it misses, so the back buffer keeps its contents.
      */
     public void swap() {
 
-        byte[] temp = frontVertexBuffer;
-        frontVertexBuffer = backVertexBuffer;
-        backVertexBuffer = temp;
+        if (!packed) {
+            swapFloats();
+            return;
+        }
+
+        final long frame = publishedFrame + 1;
+        System.arraycopy(writtenRows, 0, history[(int) (frame % HISTORY)], 0, writtenRows.length);
+        Arrays.fill(writtenRows, 0);
+        bufferFrames[back] = frame;
+        publishedFrame = frame;
+
+        final int published = back;
+        back = exchange.getAndSet(published | FRESH) & INDEX_MASK;
+
+        // Bring the spare buffer up to the frame just published
+        final int[] source = packedBuffers[published];
+        final int[] target = packedBuffers[back];
+        if (!changedRows(bufferFrames[back], frame, staleRows)) {
+            System.arraycopy(source, 0, target, 0, source.length);
+        } else {
+            for (int row = 0; row < height; row++) {
+                if ((staleRows[row >>> 6] & (1L << row)) != 0) {
+                    System.arraycopy(source, row * width, target, row * width, width);
+                }
+            }
+        }
+        bufferFrames[back] = frame;
+        frameSequence = frame;
+        notifyFrame();
+    }
+
+    /**
+     * Swaps the float front and back buffers.
+     */
+    private void swapFloats() {
 
-        temp = frontPixelBuffer;
-        frontPixelBuffer = backPixelBuffer;
-        backPixelBuffer = temp;
+        synchronized (this) {
+            swapped = true;
+
+            byte[] temp = frontVertexBuffer;
+            frontVertexBuffer = backVertexBuffer;
+            backVertexBuffer = temp;
+
+            temp = frontPixelBuffer;
+            frontPixelBuffer = backPixelBuffer;
+            backPixelBuffer = temp;
+
+            frameSequence++;
+        }
+        notifyFrame();
+    }
+
+    /**
+     * Tells the frame listeners that a new frame was swapped in.
+     */
+    private void notifyFrame() {
+
+        for (Runnable listener : frameListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Adds a listener called on the swapping thread after every swap, e.g. to wake a renderer or to capture
+     * frames with {@link #copySwappedFrame(int[])}. Listeners must be quick, since the guest waits for them.
+     *
+     * @param listener the listener to add
+     */
+    public synchronized void addFrameListener(final Runnable listener) {
+
+        final Runnable[] listeners = Arrays.copyOf(frameListeners, frameListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        frameListeners = listeners;
+    }
+
+    /**
+     * Removes a frame listener added before.
+     *
+     * @param listener the listener to remove
+     */
+    public synchronized void removeFrameListener(final Runnable listener) {
+
+        frameListeners = Arrays.stream(frameListeners).filter(other -> other != listener).toArray(Runnable[]::new);
+    }
+
+    /**
+     * Returns the sequence number of the latest frame, which grows by one on every swap. A renderer can
+     * compare it with the number of the frame it presented to tell whether there is anything new to draw.
+     *
+     * @return the number of frames swapped in so far
+     */
+    public long getFrameSequence() {
+
+        return frameSequence;
+    }
+
+    /**
+     * Collects the rows written in a range of frames from the history. Safe on the render thread while the
+     * CPU thread keeps swapping: the result is discarded when the history may have been overwritten meanwhile.
+     *
+     * @param since The frame the rows are counted from, exclusive.
+     * @param until The frame the rows are counted to, inclusive.
+     * @param rows  The bit words receiving the rows.
+     * @return false if the history no longer covers the range, so every row must be taken as changed.
+     */
+    private boolean changedRows(final long since, final long until, final long[] rows) {
+
+        if (until - since > HISTORY) {
+            return false;
+        }
+        Arrays.fill(rows, 0);
+        for (long frame = since + 1; frame <= until; frame++) {
+            final long[] written = history[(int) (frame % HISTORY)];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] |= written[i];
+            }
+        }
+        // The next swap may be overwriting the entry of frame publishedFrame + 1 - HISTORY
+        VarHandle.acquireFence();
+        return publishedFrame - since < HISTORY;
+    }
+
+    /**
+     * Hands the renderer the latest frame and the rows that changed since the frame it took before. Without
+     * packed mode every swap changes all rows.
+     *
+     * @param rows The set that receives the changed rows; its previous contents are replaced.
+     * @return true if any row changed.
+     */
+    public boolean takeDirtyRows(final BitSet rows) {
+
+        rows.clear();
+        if (!packed) {
+            return takeSwapped(rows);
+        }
+
+        if ((exchange.get() & FRESH) != 0) {
+            front = exchange.getAndSet(front) & INDEX_MASK;
+        }
+        final long frame = bufferFrames[front];
+        if (frame == takenFrame) {
+            return false;
+        }
+        if (takenFrame < 0 || !changedRows(takenFrame, frame, takenRows)) {
+            rows.set(0, height);
+        } else {
+            for (int row = 0; row < height; row++) {
+                if ((takenRows[row >>> 6] & (1L << row)) != 0) {
+                    rows.set(row);
+                }
+            }
+        }
+        takenFrame = frame;
+        return !rows.isEmpty();
+    }
+
+    /**
+     * Marks every row changed if the float buffers were swapped since the last call.
+     *
+     * @param rows The set that receives the changed rows.
+     * @return true if the buffers were swapped.
+     */
+    private synchronized boolean takeSwapped(final BitSet rows) {
+
+        if (swapped) {
+            rows.set(0, height);
+            swapped = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the color floats and the vertices of the front buffer into the renderer's buffers, with no
+     * intermediate arrays. Holds the framebuffer so a swap cannot tear the copy.
+     *
+     * @param pixels        The buffer receiving four color floats per pixel.
+     * @param pixelsIndex   The index in pixels to copy to.
+     * @param vertices      The buffer receiving eight vertex floats per pixel.
+     * @param verticesIndex The index in vertices to copy to.
+     */
+    public synchronized void copyFront(final ByteBuffer pixels, final int pixelsIndex, final ByteBuffer vertices,
+                                       final int verticesIndex) {
+
+        pixels.put(pixelsIndex, frontPixelBuffer, 0, width * height * 16);
+        vertices.put(verticesIndex, frontVertexBuffer, 0, width * height * 32);
+    }
+
+    /**
+     * Copies rows of the frame the renderer took last into the renderer's buffer as packed pixels, each at
+     * its place in the frame. The colors of a float framebuffer are converted from its front buffer. Only the
+     * thread that takes frames with {@link #takeDirtyRows(BitSet)} may call this.
+     *
+     * @param pixels The buffer receiving the pixels.
+     * @param index  The index in pixels where the frame starts.
+     * @param rows   The rows to copy.
+     */
+    public void copyPackedRows(final IntBuffer pixels, final int index, final BitSet rows) {
+
+        if (!packed) {
+            copyFloatRows(pixels, index, rows);
+            return;
+        }
+
+        for (int first = rows.nextSetBit(0); first >= 0; first = rows.nextSetBit(first)) {
+            final int end = rows.nextClearBit(first);
+            pixels.put(index + first * width, packedBuffers[front], first * width, (end - first) * width);
+            first = end;
+        }
+    }
+
+    /**
+     * Converts rows of the float front buffer to packed pixels.
+     *
+     * @param pixels The buffer receiving the pixels.
+     * @param index  The index in pixels where the frame starts.
+     * @param rows   The rows to convert.
+     */
+    private synchronized void copyFloatRows(final IntBuffer pixels, final int index, final BitSet rows) {
+
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            for (int pixel = row * width; pixel < (row + 1) * width; pixel++) {
+                pixels.put(index + pixel, packFrontPixel(pixel));
+            }
+        }
+    }
+
+    /**
+     * Converts the color floats of a pixel of the float front buffer to a packed pixel.
+     *
+     * @param pixel The index of the pixel.
+     * @return The pixel as 0xAARRGGBB.
+     */
+    private int packFrontPixel(final int pixel) {
+
+        final int r = Math.round((float) FLOATS.get(frontPixelBuffer, pixel * 16) * 255);
+        final int g = Math.round((float) FLOATS.get(frontPixelBuffer, pixel * 16 + 4) * 255);
+        final int b = Math.round((float) FLOATS.get(frontPixelBuffer, pixel * 16 + 8) * 255);
+        final int a = Math.round((float) FLOATS.get(frontPixelBuffer, pixel * 16 + 12) * 255);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Copies the whole frame just swapped in as packed pixels, without taking it from the renderer. Only
+     * valid on the swapping thread right after a swap, i.e. from a frame listener: a packed back buffer then
+     * holds the same pixels as the frame it published.
+     *
+     * @param pixels The array receiving the pixels, row by row from the top of the frame.
+     */
+    public void copySwappedFrame(final int[] pixels) {
+
+        if (packed) {
+            System.arraycopy(packedBuffers[back], 0, pixels, 0, width * height);
+            return;
+        }
+        synchronized (this) {
+            for (int pixel = 0; pixel < width * height; pixel++) {
+                pixels[pixel] = packFrontPixel(pixel);
+            }
+        }
     }
 
     /**
@@ -153,11 +582,31 @@ public class FrameBuffer {
      *
      * @return A RenderDataDto object containing the vertex and pixel data.
      * @throws MemoryException If invalid data positions are used.
+     * @throws IllegalStateException If the framebuffer is packed.
      */
     public RenderDataDto getRenderData() throws MemoryException {
+
+        if (packed) {
+            throw new IllegalStateException("A packed framebuffer has no vertex data");
+        }
         return RenderDataDto.builder().vertex(readFromVertexBufferAsFloats(0, bufferSize)).pixel(readFromPixelBufferAsFloats(0, bufferSize)).build();
     }
 
+    /**
+     * Returns the packed pixels of the frame the renderer took last, row by row from the top of the frame.
+     * Only the render thread may call this.
+     *
+     * @return The packed pixels of the frame.
+     * @throws IllegalStateException If the framebuffer is not packed.
+     */
+    public int[] getPackedPixels() {
+
+        if (!packed) {
+            throw new IllegalStateException("The framebuffer is not packed");
+        }
+        return packedBuffers[front];
+    }
+
     /**
      * Reads a segment of the front buffer as integer data.
      *
@@ -3,125 +3,209 @@ package br.faustech.memory;
 import lombok.Getter;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- * Represents a simple memory model for storing and retrieving data.
+ * Represents a memory model for storing and retrieving data, accessed as little-endian 8, 16 and 32-bit values
+ * like RISC-V memory. This base class keeps the size, the bounds checks and the write listeners; how the
+ * contents are stored is up to the implementations, {@link DenseMemory} and {@link SparseMemory}.
  */
-public class Memory {
+public abstract class Memory {
 
     @Getter
-    private static int memorySize; // Total size of the memory array
+    private final int memorySize; // Total size of the memory
 
-    private final byte[] memory; // Memory array to store data
+    private MemoryWriteListener[] writeListeners = new MemoryWriteListener[0]; // Listeners notified on every write
 
     /**
      * Constructs a memory component with specified size.
      *
-     * @param memorySize The size of the memory to allocate.
+     * @param memorySize The size of the memory.
      */
-    public Memory(final int memorySize) {
+    protected Memory(final int memorySize) {
 
-        this.memory = new byte[memorySize]; // Allocate memory
-        Memory.memorySize = memorySize;
+        this.memorySize = memorySize;
     }
 
     /**
-     * Writes data to memory at a specified position.
+     * Returns the number of bytes of host memory backing this memory.
      *
-     * @param beginDataPosition The starting position in memory to write data.
-     * @param value             The data to be written as byte array.
-     * @throws MemoryException If the memory is not writable or overflow occurs.
+     * @return the resident size in bytes
      */
-    public void write(final int beginDataPosition, final byte[] value) throws MemoryException {
+    public abstract long getResidentBytes();
 
-        for (int i = 0; i < value.length; i++) {
-            if (beginDataPosition + i < this.memory.length) {
-                this.memory[beginDataPosition + i] = value[i];
-            } else {
-                throw new MemoryException(String.format("Memory overflow at position %d", beginDataPosition + i));
-            }
-        }
+    /**
+     * Registers a listener to be notified of every write to this memory.
+     *
+     * @param listener The listener to register.
+     */
+    public void addWriteListener(final MemoryWriteListener listener) {
+
+        writeListeners = Arrays.copyOf(writeListeners, writeListeners.length + 1);
+        writeListeners[writeListeners.length - 1] = listener;
     }
 
     /**
-     * Writes integer data to memory, converting to bytes first.
+     * Notifies the registered listeners that a range of memory was written.
      *
-     * @param beginDataPosition The start position in the memory.
-     * @param value             The integer array to write, converted to bytes.
-     * @throws MemoryException If the memory is not writable or if overflow occurs.
+     * @param beginDataPosition The first position written.
+     * @param endDataPosition   The position after the last one written.
      */
-    public void writeFromInt(final int beginDataPosition, final int[] value) throws MemoryException {
+    protected void notifyWrite(final int beginDataPosition, final int endDataPosition) {
 
-        int length = value.length * 4; // Calculate byte length from int length
-        byte[] bytes = new byte[length];
-
-        ByteBuffer byteBuffer = ByteBuffer.allocate(length);
-        for (final int j : value) {
-            byteBuffer.putInt(j);
+        for (MemoryWriteListener listener : writeListeners) {
+            listener.onWrite(beginDataPosition, endDataPosition);
         }
-        byteBuffer.flip(); // Prepare buffer for reading
+    }
 
-        if (beginDataPosition + length <= this.memory.length) {
-            byteBuffer.get(bytes);
-            System.arraycopy(bytes, 0, this.memory, beginDataPosition, length);
-        } else {
-            throw new MemoryException(String.format("Memory overflow at position %d", beginDataPosition + length - 1));
+    /**
+     * Checks that an access of the given width lies inside memory.
+     *
+     * @param address The position of the first byte accessed.
+     * @param width   The number of bytes accessed.
+     * @throws MemoryException If the access is outside memory.
+     */
+    protected void checkAccess(final int address, final int width) throws MemoryException {
+
+        if (address < 0 || address > memorySize - width) {
+            throw new MemoryException(String.format("Memory access out of bounds at position %d", address));
         }
     }
 
     /**
-     * Reads a range of bytes from memory.
+     * Checks that a range of positions is valid for reading.
      *
      * @param beginDataPosition The start position in memory to read.
      * @param endDataPosition   The end position in memory to read.
-     * @return Array of bytes read from memory.
      * @throws MemoryException If the specified range is invalid.
      */
-    public byte[] read(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+    protected void checkRange(final int beginDataPosition, final int endDataPosition) throws MemoryException {
 
-        if (beginDataPosition < 0 || endDataPosition > this.memory.length) {
+        if (beginDataPosition < 0 || endDataPosition > memorySize) {
             throw new MemoryException("Invalid range specified");
         }
         if (endDataPosition <= beginDataPosition) {
             throw new MemoryException("End position must be greater than begin position");
         }
-
-        byte[] value = new byte[endDataPosition - beginDataPosition];
-        for (int i = beginDataPosition, j = 0; i < endDataPosition; i++, j++) {
-            value[j] = this.memory[i];
-        }
-        return value;
     }
 
     /**
-     * Reads a range of bytes from memory and converts them to integers.
+     * Writes data to memory at a specified position.
      *
-     * @param beginDataPosition The start position in memory to read.
-     * @param endDataPosition   The end position in memory to read.
-     * @return Array of integers read from memory.
-     * @throws MemoryException If the specified range is invalid.
+     * @param beginDataPosition The starting position in memory to write data.
+     * @param value             The data to be written as byte array.
+     * @throws MemoryException If overflow occurs.
      */
-    public int[] readAsInt(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+    public abstract void write(int beginDataPosition, byte[] value) throws MemoryException;
 
-        if (beginDataPosition < 0 || endDataPosition > this.memory.length) {
-            throw new MemoryException("Invalid range specified");
-        }
-        if (endDataPosition <= beginDataPosition) {
-            throw new MemoryException("End position must be greater than begin position");
-        }
+    /**
+     * Writes the remaining bytes of a buffer to memory at a specified position, without changing the buffer's
+     * position. This is how mapped files are copied into memory in bulk.
+     *
+     * @param beginDataPosition The starting position in memory to write data.
+     * @param value             The data to be written.
+     * @throws MemoryException If overflow occurs.
+     */
+    public abstract void write(int beginDataPosition, ByteBuffer value) throws MemoryException;
 
-        int length = endDataPosition - beginDataPosition;
-        byte[] value = new byte[length];
+    /**
+     * Sets a range of memory to zero.
+     *
+     * @param beginDataPosition The first position to clear.
+     * @param endDataPosition   The position after the last one to clear.
+     * @throws MemoryException If the range is outside memory.
+     */
+    public abstract void clear(int beginDataPosition, int endDataPosition) throws MemoryException;
 
-        System.arraycopy(this.memory, beginDataPosition, value, 0, length);
+    /**
+     * Writes integer data to memory as consecutive little-endian words.
+     *
+     * @param beginDataPosition The start position in the memory.
+     * @param value             The integer array to write.
+     * @throws MemoryException If overflow occurs.
+     */
+    public abstract void writeFromInt(int beginDataPosition, int[] value) throws MemoryException;
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(value);
-        int[] intArray = new int[length / 4]; // Calculate number of integers
-        for (int i = 0; i < intArray.length; i++) {
-            intArray[i] = byteBuffer.getInt(); // Convert bytes to integer
-        }
+    /**
+     * Reads a byte from memory.
+     *
+     * @param address The position of the byte.
+     * @return The byte read, zero-extended.
+     * @throws MemoryException If the byte is outside memory.
+     */
+    public abstract int load8(int address) throws MemoryException;
 
-        return intArray;
-    }
+    /**
+     * Reads a little-endian halfword from memory.
+     *
+     * @param address The position of the first byte of the halfword.
+     * @return The halfword read, zero-extended.
+     * @throws MemoryException If the halfword is outside memory.
+     */
+    public abstract int load16(int address) throws MemoryException;
+
+    /**
+     * Reads a little-endian word from memory.
+     *
+     * @param address The position of the first byte of the word.
+     * @return The word read.
+     * @throws MemoryException If the word is outside memory.
+     */
+    public abstract int load32(int address) throws MemoryException;
+
+    /**
+     * Writes a byte to memory.
+     *
+     * @param address The position of the byte.
+     * @param value   The value whose low 8 bits are written.
+     * @throws MemoryException If the byte is outside memory.
+     */
+    public abstract void store8(int address, int value) throws MemoryException;
+
+    /**
+     * Writes a little-endian halfword to memory.
+     *
+     * @param address The position of the first byte of the halfword.
+     * @param value   The value whose low 16 bits are written.
+     * @throws MemoryException If the halfword is outside memory.
+     */
+    public abstract void store16(int address, int value) throws MemoryException;
+
+    /**
+     * Writes a little-endian word to memory.
+     *
+     * @param address The position of the first byte of the word.
+     * @param value   The word to write.
+     * @throws MemoryException If the word is outside memory.
+     */
+    public abstract void store32(int address, int value) throws MemoryException;
+
+    /**
+     * Reads a range of bytes from memory.
+     *
+     * @param beginDataPosition The start position in memory to read.
+     * @param endDataPosition   The end position in memory to read.
+     * @return Array of bytes read from memory.
+     * @throws MemoryException If the specified range is invalid.
+     */
+    public abstract byte[] read(int beginDataPosition, int endDataPosition) throws MemoryException;
+
+    /**
+     * Reads a range of memory as consecutive little-endian words.
+     *
+     * @param beginDataPosition The start position in memory to read.
+     * @param endDataPosition   The end position in memory to read.
+     * @return Array of integers read from memory.
+     * @throws MemoryException If the specified range is invalid.
+     */
+    public abstract int[] readAsInt(int beginDataPosition, int endDataPosition) throws MemoryException;
+
+    /**
+     * Computes a CRC-32 checksum of the whole memory, e.g. to compare the final state of two runs. Memories
+     * with the same contents have the same checksum, however they store them.
+     *
+     * @return the checksum of the memory contents
+     */
+    public abstract long checksum();
 
 }
@@ -0,0 +1,17 @@
+package br.faustech.memory;
+
+/**
+ * Listener notified whenever a range of memory is overwritten, e.g. to drop cached copies of that range.
+ */
+@FunctionalInterface
+public interface MemoryWriteListener {
+
+    /**
+     * Called after bytes in the given range have been written.
+     *
+     * @param beginAddress The first address written (inclusive).
+     * @param endAddress   The last address written (exclusive).
+     */
+    void onWrite(int beginAddress, int endAddress);
+
+}
@@ -0,0 +1,435 @@
+package br.faustech.memory;
+
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A memory whose pages are allocated on the first write that changes them. Reads of untouched pages return
+ * zero, so large address spaces only cost the pages the program actually uses.
+ */
+public class SparseMemory extends Memory {
+
+    public static final int PAGE_SHIFT = 12; // Pages of 4 KB
+
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT; // Size of a page in bytes
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1; // Offset of an address within its page
+
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class,
+            ByteOrder.LITTLE_ENDIAN); // Little-endian halfword access within a page
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN); // Little-endian word access within a page
+
+    private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE]; // Read in place of pages never written
+
+    private final byte[][] pages; // Page contents, null until first written
+
+    @Getter
+    private int residentPages; // Number of pages allocated so far
+
+    /**
+     * Constructs a sparse memory component with the specified size. No page is allocated until written.
+     *
+     * @param memorySize The size of the memory.
+     */
+    public SparseMemory(final int memorySize) {
+
+        super(memorySize);
+        this.pages = new byte[(memorySize + PAGE_MASK) >>> PAGE_SHIFT][];
+    }
+
+    /**
+     * Returns the number of pages the memory is divided into, resident or not.
+     *
+     * @return the page count
+     */
+    public int getPageCount() {
+
+        return pages.length;
+    }
+
+    /**
+     * Returns the number of bytes of host memory backing the resident pages.
+     *
+     * @return the resident size in bytes
+     */
+    @Override
+    public long getResidentBytes() {
+
+        return (long) residentPages * PAGE_SIZE;
+    }
+
+    /**
+     * Returns the page containing an address for reading.
+     *
+     * @param address The address.
+     * @return The page, or the shared zero page if it was never written.
+     */
+    private byte[] readablePage(final int address) {
+
+        final byte[] page = pages[address >>> PAGE_SHIFT];
+        return page == null ? ZERO_PAGE : page;
+    }
+
+    /**
+     * Returns the page containing an address for writing, allocating it if needed.
+     *
+     * @param address The address.
+     * @return The page.
+     */
+    private byte[] writablePage(final int address) {
+
+        final int index = address >>> PAGE_SHIFT;
+        byte[] page = pages[index];
+        if (page == null) {
+            page = new byte[PAGE_SIZE];
+            pages[index] = page;
+            residentPages++;
+        }
+        return page;
+    }
+
+    /**
+     * Returns whether a store of zero to an address can be skipped because its page was never written.
+     *
+     * @param address The address.
+     * @param value   The value stored, already narrowed to the width of the store.
+     * @return true if the value is zero and the page is not resident
+     */
+    private boolean isZeroStoreToAbsentPage(final int address, final int value) {
+
+        return value == 0 && pages[address >>> PAGE_SHIFT] == null;
+    }
+
+    /**
+     * Writes a byte without checking bounds or notifying listeners. A zero written to a page that was never
+     * written is skipped, like in {@link #write(int, byte[])}.
+     *
+     * @param address The position of the byte.
+     * @param value   The value whose low 8 bits are written.
+     */
+    private void putByte(final int address, final int value) {
+
+        if (!isZeroStoreToAbsentPage(address, value & 0xFF)) {
+            writablePage(address)[address & PAGE_MASK] = (byte) value;
+        }
+    }
+
+    /**
+     * Writes a little-endian word without checking bounds or notifying listeners. Zeros written to pages that
+     * were never written are skipped.
+     *
+     * @param address The position of the first byte of the word.
+     * @param value   The word to write.
+     */
+    private void putInt(final int address, final int value) {
+
+        final int offset = address & PAGE_MASK;
+        if (offset <= PAGE_SIZE - 4) {
+            if (!isZeroStoreToAbsentPage(address, value)) {
+                INT.set(writablePage(address), offset, value);
+            }
+        } else {
+            for (int i = 0; i < 4; i++) {
+                putByte(address + i, value >>> (i * 8));
+            }
+        }
+    }
+
+    /**
+     * Reads a little-endian word without checking bounds.
+     *
+     * @param address The position of the first byte of the word.
+     * @return The word read.
+     */
+    private int getInt(final int address) {
+
+        final int offset = address & PAGE_MASK;
+        if (offset <= PAGE_SIZE - 4) {
+            return (int) INT.get(readablePage(address), offset);
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value |= (readablePage(address + i)[(address + i) & PAGE_MASK] & 0xFF) << (i * 8);
+        }
+        return value;
+    }
+
+    /**
+     * Writes data to memory at a specified position. Zeros written to pages that were never written are
+     * skipped, so clearing memory does not make it resident.
+     *
+     * @param beginDataPosition The starting position in memory to write data.
+     * @param value             The data to be written as byte array.
+     * @throws MemoryException If overflow occurs.
+     */
+    @Override
+    public void write(final int beginDataPosition, final byte[] value) throws MemoryException {
+
+        if (beginDataPosition < 0 || beginDataPosition + value.length > getMemorySize()) {
+            throw new MemoryException(String.format("Memory overflow at position %d",
+                    Math.max(beginDataPosition, getMemorySize())));
+        }
+
+        int position = 0;
+        while (position < value.length) {
+            final int address = beginDataPosition + position;
+            final int offset = address & PAGE_MASK;
+            final int length = Math.min(PAGE_SIZE - offset, value.length - position);
+            if (pages[address >>> PAGE_SHIFT] != null
+                    || Arrays.mismatch(value, position, position + length, ZERO_PAGE, 0, length) >= 0) {
+                System.arraycopy(value, position, writablePage(address), offset, length);
+            }
+            position += length;
+        }
+        notifyWrite(beginDataPosition, beginDataPosition + value.length);
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to memory at a specified position, without changing the buffer's
+     * position. Like {@link #write(int, byte[])}, zeros written to pages that were never written are skipped.
+     *
+     * @param beginDataPosition The starting position in memory to write data.
+     * @param value             The data to be written.
+     * @throws MemoryException If overflow occurs.
+     */
+    @Override
+    public void write(final int beginDataPosition, final ByteBuffer value) throws MemoryException {
+
+        final int total = value.remaining();
+        if (beginDataPosition < 0 || beginDataPosition + total > getMemorySize()) {
+            throw new MemoryException(String.format("Memory overflow at position %d",
+                    Math.max(beginDataPosition, getMemorySize())));
+        }
+
+        int position = 0;
+        while (position < total) {
+            final int address = beginDataPosition + position;
+            final int offset = address & PAGE_MASK;
+            final int length = Math.min(PAGE_SIZE - offset, total - position);
+            final ByteBuffer chunk = value.slice(value.position() + position, length);
+            if (pages[address >>> PAGE_SHIFT] != null || chunk.mismatch(ByteBuffer.wrap(ZERO_PAGE, 0, length)) >= 0) {
+                chunk.get(0, writablePage(address), offset, length);
+            }
+            position += length;
+        }
+        notifyWrite(beginDataPosition, beginDataPosition + total);
+    }
+
+    /**
+     * Sets a range of memory to zero. Pages that were never written already read as zero and stay untouched.
+     *
+     * @param beginDataPosition The first position to clear.
+     * @param endDataPosition   The position after the last one to clear.
+     * @throws MemoryException If the range is outside memory.
+     */
+    @Override
+    public void clear(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+
+        if (beginDataPosition < 0 || endDataPosition > getMemorySize() || endDataPosition < beginDataPosition) {
+            throw new MemoryException("Invalid range specified");
+        }
+
+        int address = beginDataPosition;
+        while (address < endDataPosition) {
+            final int offset = address & PAGE_MASK;
+            final int length = Math.min(PAGE_SIZE - offset, endDataPosition - address);
+            final byte[] page = pages[address >>> PAGE_SHIFT];
+            if (page != null) {
+                Arrays.fill(page, offset, offset + length, (byte) 0);
+            }
+            address += length;
+        }
+        notifyWrite(beginDataPosition, endDataPosition);
+    }
+
+    /**
+     * Writes integer data to memory as consecutive little-endian words.
+     *
+     * @param beginDataPosition The start position in the memory.
+     * @param value             The integer array to write.
+     * @throws MemoryException If overflow occurs.
+     */
+    @Override
+    public void writeFromInt(final int beginDataPosition, final int[] value) throws MemoryException {
+
+        final int length = value.length * 4; // Calculate byte length from int length
+        if (beginDataPosition < 0 || beginDataPosition + length > getMemorySize()) {
+            throw new MemoryException(String.format("Memory overflow at position %d", beginDataPosition + length - 1));
+        }
+
+        for (int i = 0; i < value.length; i++) {
+            putInt(beginDataPosition + i * 4, value[i]);
+        }
+        notifyWrite(beginDataPosition, beginDataPosition + length);
+    }
+
+    /**
+     * Reads a byte from memory.
+     *
+     * @param address The position of the byte.
+     * @return The byte read, zero-extended.
+     * @throws MemoryException If the byte is outside memory.
+     */
+    @Override
+    public int load8(final int address) throws MemoryException {
+
+        checkAccess(address, 1);
+        return readablePage(address)[address & PAGE_MASK] & 0xFF;
+    }
+
+    /**
+     * Reads a little-endian halfword from memory.
+     *
+     * @param address The position of the first byte of the halfword.
+     * @return The halfword read, zero-extended.
+     * @throws MemoryException If the halfword is outside memory.
+     */
+    @Override
+    public int load16(final int address) throws MemoryException {
+
+        checkAccess(address, 2);
+        final int offset = address & PAGE_MASK;
+        if (offset <= PAGE_SIZE - 2) {
+            return (short) SHORT.get(readablePage(address), offset) & 0xFFFF;
+        }
+        return load8(address) | load8(address + 1) << 8;
+    }
+
+    /**
+     * Reads a little-endian word from memory.
+     *
+     * @param address The position of the first byte of the word.
+     * @return The word read.
+     * @throws MemoryException If the word is outside memory.
+     */
+    @Override
+    public int load32(final int address) throws MemoryException {
+
+        checkAccess(address, 4);
+        return getInt(address);
+    }
+
+    /**
+     * Writes a byte to memory.
+     *
+     * @param address The position of the byte.
+     * @param value   The value whose low 8 bits are written.
+     * @throws MemoryException If the byte is outside memory.
+     */
+    @Override
+    public void store8(final int address, final int value) throws MemoryException {
+
+        checkAccess(address, 1);
+        putByte(address, value);
+        notifyWrite(address, address + 1);
+    }
+
+    /**
+     * Writes a little-endian halfword to memory.
+     *
+     * @param address The position of the first byte of the halfword.
+     * @param value   The value whose low 16 bits are written.
+     * @throws MemoryException If the halfword is outside memory.
+     */
+    @Override
+    public void store16(final int address, final int value) throws MemoryException {
+
+        checkAccess(address, 2);
+        final int offset = address & PAGE_MASK;
+        if (offset <= PAGE_SIZE - 2) {
+            if (!isZeroStoreToAbsentPage(address, value & 0xFFFF)) {
+                SHORT.set(writablePage(address), offset, (short) value);
+            }
+        } else {
+            putByte(address, value);
+            putByte(address + 1, value >>> 8);
+        }
+        notifyWrite(address, address + 2);
+    }
+
+    /**
+     * Writes a little-endian word to memory.
+     *
+     * @param address The position of the first byte of the word.
+     * @param value   The word to write.
+     * @throws MemoryException If the word is outside memory.
+     */
+    @Override
+    public void store32(final int address, final int value) throws MemoryException {
+
+        checkAccess(address, 4);
+        putInt(address, value);
+        notifyWrite(address, address + 4);
+    }
+
+    /**
+     * Reads a range of bytes from memory.
+     *
+     * @param beginDataPosition The start position in memory to read.
+     * @param endDataPosition   The end position in memory to read.
+     * @return Array of bytes read from memory.
+     * @throws MemoryException If the specified range is invalid.
+     */
+    @Override
+    public byte[] read(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+
+        checkRange(beginDataPosition, endDataPosition);
+
+        final byte[] value = new byte[endDataPosition - beginDataPosition];
+        int position = 0;
+        while (position < value.length) {
+            final int address = beginDataPosition + position;
+            final int offset = address & PAGE_MASK;
+            final int length = Math.min(PAGE_SIZE - offset, value.length - position);
+            System.arraycopy(readablePage(address), offset, value, position, length);
+            position += length;
+        }
+        return value;
+    }
+
+    /**
+     * Reads a range of memory as consecutive little-endian words.
+     *
+     * @param beginDataPosition The start position in memory to read.
+     * @param endDataPosition   The end position in memory to read.
+     * @return Array of integers read from memory.
+     * @throws MemoryException If the specified range is invalid.
+     */
+    @Override
+    public int[] readAsInt(final int beginDataPosition, final int endDataPosition) throws MemoryException {
+
+        checkRange(beginDataPosition, endDataPosition);
+
+        final int[] intArray = new int[(endDataPosition - beginDataPosition) / 4]; // Calculate number of integers
+        for (int i = 0; i < intArray.length; i++) {
+            intArray[i] = getInt(beginDataPosition + i * 4);
+        }
+        return intArray;
+    }
+
+    /**
+     * Computes a CRC-32 checksum of the whole memory, equal to the checksum of a dense memory with the same
+     * contents.
+     *
+     * @return the checksum of the memory contents
+     */
+    @Override
+    public long checksum() {
+
+        final CRC32 crc = new CRC32();
+        for (int i = 0; i < pages.length; i++) {
+            final byte[] page = pages[i] == null ? ZERO_PAGE : pages[i];
+            crc.update(page, 0, Math.min(PAGE_SIZE, getMemorySize() - (i << PAGE_SHIFT)));
+        }
+        return crc.getValue();
+    }
+
+}
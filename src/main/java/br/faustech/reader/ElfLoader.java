@@ -0,0 +1,142 @@
+package br.faustech.reader;
+
+import br.faustech.memory.Memory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Loads 32-bit little-endian RISC-V ELF executables. The file is memory mapped and every PT_LOAD segment is
+ * copied into memory in bulk at its physical address, with the part of the segment beyond the file contents
+ * (.bss) cleared to zero. RAM starts at address 0, so programs must be linked to run there; images linked at
+ * the usual bare-metal base of 0x80000000 are refused.
+ */
+public class ElfLoader {
+
+    private static final int MAGIC = 0x464C457F; // "\177ELF" read as a little-endian word
+
+    private static final int ELFCLASS32 = 1; // e_ident[EI_CLASS] of 32-bit objects
+
+    private static final int ELFDATA2LSB = 1; // e_ident[EI_DATA] of little-endian objects
+
+    private static final int ET_EXEC = 2; // e_type of executables
+
+    private static final int EM_RISCV = 243; // e_machine of RISC-V
+
+    private static final int PT_LOAD = 1; // p_type of loadable segments
+
+    private static final int PROGRAM_HEADER_SIZE = 32; // Minimum size of an ELF32 program header
+
+    private final Memory memory; // Memory the segments are loaded into
+
+    /**
+     * Constructs an ELF loader that writes into the given memory.
+     *
+     * @param memory The memory to load segments into.
+     */
+    public ElfLoader(final Memory memory) {
+
+        this.memory = memory;
+    }
+
+    /**
+     * Tells whether a file starts with the ELF magic number.
+     *
+     * @param file The file to check.
+     * @return true if the file is an ELF object.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isElf(final File file) throws IOException {
+
+        if (!file.isFile() || file.length() < 4) {
+            return false;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            return Integer.reverseBytes(input.readInt()) == MAGIC;
+        }
+    }
+
+    /**
+     * Loads the segments of an ELF executable into memory.
+     *
+     * @param file The ELF file to load.
+     * @return The entry point of the program.
+     * @throws IOException If the file cannot be read or is not a 32-bit little-endian RISC-V executable.
+     */
+    public int load(final File file) throws IOException {
+
+        if (!file.exists()) {
+            throw new FileNotFoundException(String.format("File %s not found.", file.getName()));
+        }
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+            final MappedByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            image.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (image.limit() < 52 || image.getInt(0) != MAGIC) {
+                throw new IOException(String.format("File %s is not an ELF file.", file.getName()));
+            }
+            if (image.get(4) != ELFCLASS32 || image.get(5) != ELFDATA2LSB || image.getShort(16) != ET_EXEC
+                    || image.getShort(18) != EM_RISCV) {
+                throw new IOException(String.format("File %s is not a 32-bit little-endian RISC-V executable.",
+                        file.getName()));
+            }
+
+            final int entry = image.getInt(24);
+            final int programHeaderOffset = image.getInt(28);
+            final int programHeaderSize = image.getShort(42) & 0xFFFF;
+            final int programHeaderCount = image.getShort(44) & 0xFFFF;
+            if (programHeaderSize < PROGRAM_HEADER_SIZE || programHeaderOffset < 0
+                    || (long) programHeaderOffset + (long) programHeaderSize * programHeaderCount > image.limit()) {
+                throw new IOException(String.format("File %s has an invalid program header table.",
+                        file.getName()));
+            }
+
+            for (int i = 0; i < programHeaderCount; i++) {
+                final int header = programHeaderOffset + i * programHeaderSize;
+                if (image.getInt(header) == PT_LOAD) {
+                    loadSegment(file, image, header);
+                }
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Copies one PT_LOAD segment into memory and clears the rest of its memory image.
+     *
+     * @param file   The ELF file, for error messages.
+     * @param image  The mapped file.
+     * @param header The offset of the program header of the segment.
+     * @throws IOException If the segment lies outside the file or outside memory.
+     */
+    private void loadSegment(final File file, final MappedByteBuffer image, final int header) throws IOException {
+
+        final int offset = image.getInt(header + 4);
+        final int address = image.getInt(header + 12); // p_paddr
+        final int fileSize = image.getInt(header + 16);
+        final int memorySize = image.getInt(header + 20);
+        if (offset < 0 || fileSize < 0 || memorySize < fileSize || (long) offset + fileSize > image.limit()) {
+            throw new IOException(String.format("File %s has an invalid segment at offset %d.", file.getName(),
+                    offset));
+        }
+        if (address < 0 || (long) address + memorySize > memory.getMemorySize()) {
+            throw new IOException(String.format(
+                    "Segment at address 0x%08x of file %s does not fit in memory of %d bytes starting at 0.",
+                    address, file.getName(), memory.getMemorySize()));
+        }
+
+        if (fileSize > 0) {
+            memory.write(address, image.slice(offset, fileSize));
+        }
+        if (memorySize > fileSize) {
+            memory.clear(address + fileSize, address + memorySize);
+        }
+    }
+
+}
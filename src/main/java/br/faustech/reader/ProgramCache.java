@@ -0,0 +1,139 @@
+package br.faustech.reader;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import org.lwjgl.util.xxhash.XXHash;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * An on-disk cache of parsed .txt programs. Entries are keyed by the XXH3 hash and size of the source file
+ * and hold the program as little-endian words, so a program that was parsed once is afterwards read by
+ * mapping its image, without parsing. Failing to write an entry only costs the next run a parse.
+ */
+@Log
+public class ProgramCache {
+
+    public static final String DIRECTORY_PROPERTY = "emulator.cache.dir"; // Overrides the default location
+
+    private final Path directory; // Directory holding the cached images
+
+    @Getter
+    private long hits; // Number of programs read from the cache
+
+    @Getter
+    private long misses; // Number of programs that had to be parsed
+
+    /**
+     * Constructs a cache storing its images in the given directory, which is created on first use.
+     *
+     * @param directory the cache directory
+     */
+    public ProgramCache(final Path directory) {
+
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache in the directory given by the emulator.cache.dir system property, or in
+     * ~/.cache/riscv-emulator by default. Setting the property to an empty string disables caching.
+     *
+     * @return the cache, or null if caching is disabled
+     */
+    public static ProgramCache defaultCache() {
+
+        final String directory = System.getProperty(DIRECTORY_PROPERTY,
+                Paths.get(System.getProperty("user.home"), ".cache", "riscv-emulator").toString());
+        return directory.isEmpty() ? null : new ProgramCache(Paths.get(directory));
+    }
+
+    /**
+     * Reads a .txt program, from its cached image if the same contents were parsed before.
+     *
+     * @param file the .txt file to read
+     * @return an array of integers representing the program instructions
+     * @throws IOException if the file cannot be read
+     */
+    public int[] readTxtFile(final File file) throws IOException {
+
+        if (!file.exists()) {
+            throw new FileNotFoundException(String.format("File %s not found.", file.getName()));
+        }
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+            final MappedByteBuffer text = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (text.limit() == 0) {
+                return new int[0];
+            }
+
+            final Path image = directory.resolve(String.format("%016x-%d.words", XXHash.XXH3_64bits(text),
+                    text.limit()));
+            if (Files.isRegularFile(image)) {
+                final int[] program = readImage(image);
+                if (program != null) {
+                    hits++;
+                    return program;
+                }
+            }
+
+            misses++;
+            final int[] program = ProgramUtils.parseTxt(text);
+            writeImage(image, program);
+            return program;
+        }
+    }
+
+    /**
+     * Maps a cached image and reads its words.
+     *
+     * @param image the path of the image
+     * @return the program words, or null if the image is not a whole number of words
+     * @throws IOException if the image cannot be read
+     */
+    private static int[] readImage(final Path image) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(image)) {
+            final long size = channel.size();
+            if (size % 4 != 0 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            final int[] program = new int[(int) (size / 4)];
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+                    .get(program);
+            return program;
+        }
+    }
+
+    /**
+     * Stores the image of a parsed program. The image is written to a temporary file first and then moved
+     * into place, so concurrent emulators never read a partial image.
+     *
+     * @param image   the path of the image
+     * @param program the program words
+     */
+    private void writeImage(final Path image, final int[] program) {
+
+        try {
+            Files.createDirectories(directory);
+            final ByteBuffer words = ByteBuffer.allocate(program.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+            words.asIntBuffer().put(program);
+            final Path temporary = Files.createTempFile(directory, "program", ".tmp");
+            Files.write(temporary, words.array());
+            Files.move(temporary, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warning(String.format("Failed to cache program image %s: %s", image, e.getMessage()));
+        }
+    }
+
+}
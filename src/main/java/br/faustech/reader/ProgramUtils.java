@@ -6,27 +6,49 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Scanner;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.stream.IntStream;
 
 /**
  * Utility class for reading program files (.bin and .txt) and writing programs into memory.
  */
 public class ProgramUtils {
 
+    private static final int PARALLEL_THRESHOLD = 1 << 20; // Size from which .txt files are parsed on all cores
+
+    private static final int CHUNK_SIZE = 1 << 18; // Minimum size of a chunk parsed on its own
+
     private final Bus bus; // Bus instance used for writing programs into memory
 
+    private final ProgramCache cache; // Cache of parsed .txt programs, null when disabled
+
     /**
-     * Constructs a ProgramUtils instance with a specified Bus instance.
+     * Constructs a ProgramUtils instance with a specified Bus instance, using the default program cache.
      *
      * @param bus The Bus instance to use for memory operations.
      */
     public ProgramUtils(Bus bus) {
 
+        this(bus, ProgramCache.defaultCache());
+    }
+
+    /**
+     * Constructs a ProgramUtils instance with a specified Bus instance and program cache.
+     *
+     * @param bus   The Bus instance to use for memory operations.
+     * @param cache The cache of parsed .txt programs, or null to always parse them.
+     */
+    public ProgramUtils(Bus bus, ProgramCache cache) {
+
         this.bus = bus;
+        this.cache = cache;
     }
 
     /**
-     * Reads the contents of a file and determines its type (.bin or .txt) to process accordingly.
+     * Reads the contents of a file and determines its type (.bin or .txt) to process accordingly. Text
+     * programs are read through the program cache when there is one.
      *
      * @param file The file to read.
      * @return An array of integers representing the program instructions.
@@ -39,7 +61,7 @@ public class ProgramUtils {
         if (fileName.endsWith(".bin")) {
             return readBinaryFile(file);
         } else if (fileName.endsWith(".txt")) {
-            return readTxtFile(file);
+            return cache != null ? cache.readTxtFile(file) : readTxtFile(file);
         } else {
             throw new IllegalArgumentException("File must have .bin or .txt extension.");
         }
@@ -89,14 +111,17 @@ public class ProgramUtils {
 
 
     /**
-     * Reads the contents of a text file (.txt) and converts them into machine instructions.
+     * Reads the contents of a text file (.txt) and converts them into machine instructions. Every non-empty
+     * line holds one instruction written in binary. The file is memory mapped and parsed in place without
+     * building Strings; large files are split into line-aligned chunks parsed on all cores.
      *
      * @param file The .txt file to read.
      * @return An array of integers representing the machine instructions.
-     * @throws FileNotFoundException    If the file is not found.
-     * @throws IllegalArgumentException If the file does not have a .txt extension.
+     * @throws IOException              If the file is not found or cannot be read.
+     * @throws IllegalArgumentException If the file does not have a .txt extension or contains a character
+     *                                  other than 0 and 1 on a line.
      */
-    public int[] readTxtFile(File file) throws FileNotFoundException {
+    public int[] readTxtFile(File file) throws IOException {
 
         if (!file.exists()) {
             throw new FileNotFoundException(String.format("File %s not found.", file.getName()));
@@ -107,25 +132,120 @@ public class ProgramUtils {
             throw new IllegalArgumentException("File must have .txt extension.");
         }
 
-        StringBuilder content = new StringBuilder();
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                content.append(scanner.nextLine()).append("\n");
-            }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+            return parseTxt(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
         }
+    }
 
-        String program = content.toString();
-        String[] lines = program.split("\n");
-        int[] programBin = new int[lines.length];
+    /**
+     * Parses a program in the .txt format from a buffer, splitting large buffers into chunks that start at
+     * line boundaries. Each chunk is counted and then parsed straight into its slice of the result.
+     *
+     * @param text The program text, from index 0 to its limit.
+     * @return An array of integers representing the machine instructions.
+     * @throws IllegalArgumentException If a line contains a character other than 0 and 1.
+     */
+    public static int[] parseTxt(final ByteBuffer text) {
+
+        final int size = text.limit();
+        final int chunks = size < PARALLEL_THRESHOLD ? 1
+                : Math.min(size / CHUNK_SIZE, 4 * Runtime.getRuntime().availableProcessors());
 
-        for (int i = 0; i < lines.length; i++) {
-            long longValue = Long.parseLong(lines[i], 2);
-            programBin[i] = (int) longValue;
+        final int[] bounds = new int[chunks + 1];
+        bounds[chunks] = size;
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            int position = Math.max((int) ((long) size * chunk / chunks), bounds[chunk - 1]);
+            while (position < size && text.get(position - 1) != '\n') {
+                position++;
+            }
+            bounds[chunk] = position;
+        }
+
+        final int[] offsets = new int[chunks + 1];
+        if (chunks == 1) {
+            offsets[1] = countLines(text, 0, size);
+        } else {
+            final int[] counts = new int[chunks];
+            IntStream.range(0, chunks).parallel()
+                    .forEach(chunk -> counts[chunk] = countLines(text, bounds[chunk], bounds[chunk + 1]));
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                offsets[chunk + 1] = offsets[chunk] + counts[chunk];
+            }
         }
 
+        final int[] programBin = new int[offsets[chunks]];
+        if (chunks == 1) {
+            parseLines(text, 0, size, programBin, 0);
+        } else {
+            IntStream.range(0, chunks).parallel()
+                    .forEach(chunk -> parseLines(text, bounds[chunk], bounds[chunk + 1], programBin, offsets[chunk]));
+        }
         return programBin;
     }
 
+    /**
+     * Counts the non-empty lines in a range of the program text.
+     *
+     * @param text  The program text.
+     * @param begin The first index of the range, at the start of a line.
+     * @param end   The index after the range, at the start of a line or the end of the text.
+     * @return The number of instructions in the range.
+     */
+    private static int countLines(final ByteBuffer text, final int begin, final int end) {
+
+        int count = 0;
+        boolean digits = false; // Whether the current line has any digit so far
+        for (int i = begin; i < end; i++) {
+            final byte character = text.get(i);
+            if (character == '\n') {
+                if (digits) {
+                    count++;
+                }
+                digits = false;
+            } else if (character == '0' || character == '1') {
+                digits = true;
+            }
+        }
+        return digits ? count + 1 : count;
+    }
+
+    /**
+     * Parses the non-empty lines in a range of the program text. Lines longer than 32 digits keep their
+     * lowest 32 bits, and carriage returns are ignored.
+     *
+     * @param text       The program text.
+     * @param begin      The first index of the range, at the start of a line.
+     * @param end        The index after the range, at the start of a line or the end of the text.
+     * @param programBin The array receiving the instructions.
+     * @param index      The index of the first instruction of the range in the array.
+     * @throws IllegalArgumentException If a line contains a character other than 0 and 1.
+     */
+    private static void parseLines(final ByteBuffer text, final int begin, final int end, final int[] programBin,
+                                   int index) {
+
+        int value = 0;
+        boolean digits = false; // Whether the current line has any digit so far
+        for (int i = begin; i < end; i++) {
+            final byte character = text.get(i);
+            if (character == '0' || character == '1') {
+                value = (value << 1) | (character - '0');
+                digits = true;
+            } else if (character == '\n') {
+                if (digits) {
+                    programBin[index++] = value;
+                }
+                value = 0;
+                digits = false;
+            } else if (character != '\r') {
+                throw new IllegalArgumentException(String.format("Invalid character '%c' at position %d.",
+                        (char) (character & 0xFF), i));
+            }
+        }
+        if (digits) {
+            programBin[index] = value;
+        }
+    }
+
     /**
      * Writes the program instructions into memory starting from address 0.
      *
@@ -0,0 +1,240 @@
+package br.faustech.timer;
+
+import br.faustech.bus.Bus;
+import br.faustech.comum.Device;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A CLINT-style machine timer: a 64-bit mtime counter and an mtimecmp compare register, both memory mapped
+ * as pairs of 32-bit words (low word first). The timer interrupt is pending while mtime >= mtimecmp.
+ * mtime advances either with the number of retired instructions, which makes interrupt timing deterministic,
+ * or with wall time.
+ */
+public class Clint implements Device {
+
+    public static final int BASE_ADDRESS = Bus.DEVICE_BASE; // Bus address of the device, in the device window
+
+    public static final int SIZE = 0x10000; // Size of the address range of the device
+
+    public static final int MTIMECMP = 0x4000; // Offset of the mtimecmp register
+
+    public static final int MTIME = 0xBFF8; // Offset of the mtime register
+
+    private LongSupplier instructionCounter = () -> 0; // Retired instructions of the CPU using this timer
+
+    private long instructionsPerTick = 0; // Instructions per mtime tick, or 0 when driven by wall time
+
+    private long nanosPerTick = 1_000_000; // Nanoseconds per mtime tick when driven by wall time
+
+    private long offset = 0; // Added to the raw tick count, so that writes to mtime take effect
+
+    @Getter
+    private long mtimecmp = -1; // Compare register, unsigned; the maximum value never fires
+
+    /**
+     * Number of ticks between interrupts when the timer re-arms itself, or 0 once the program manages
+     * mtimecmp. The first write to mtimecmp disables re-arming.
+     */
+    @Getter
+    @Setter
+    private long period = 0;
+
+    @Setter
+    private Runnable writeListener; // Notified when a register is written, so the CPU re-evaluates interrupts
+
+    /**
+     * Constructs a timer driven by wall time with 1 ms ticks, with mtime starting at 0.
+     */
+    public Clint() {
+
+        setMtime(0);
+    }
+
+    /**
+     * Connects the timer to the instruction counter of the CPU that uses it.
+     *
+     * @param instructionCounter supplies the number of instructions the CPU retired
+     */
+    public void setInstructionCounter(final LongSupplier instructionCounter) {
+
+        final long mtime = getMtime();
+        this.instructionCounter = instructionCounter;
+        setMtime(mtime);
+    }
+
+    /**
+     * Drives mtime by the number of retired instructions, which makes timer interrupts deterministic.
+     *
+     * @param instructionsPerTick the number of retired instructions per mtime tick
+     */
+    public void useInstructionClock(final long instructionsPerTick) {
+
+        if (instructionsPerTick <= 0) {
+            throw new IllegalArgumentException("Instructions per tick must be positive.");
+        }
+        final long mtime = getMtime();
+        this.instructionsPerTick = instructionsPerTick;
+        setMtime(mtime);
+    }
+
+    /**
+     * Drives mtime by wall time.
+     *
+     * @param nanosPerTick the number of nanoseconds per mtime tick
+     */
+    public void useWallClock(final long nanosPerTick) {
+
+        if (nanosPerTick <= 0) {
+            throw new IllegalArgumentException("Nanoseconds per tick must be positive.");
+        }
+        final long mtime = getMtime();
+        this.instructionsPerTick = 0;
+        this.nanosPerTick = nanosPerTick;
+        setMtime(mtime);
+    }
+
+    /**
+     * Tells whether mtime is driven by the number of retired instructions.
+     *
+     * @return true if timer interrupts are deterministic
+     */
+    public boolean isInstructionClock() {
+
+        return instructionsPerTick != 0;
+    }
+
+    /**
+     * Returns the tick count of the active clock, before the offset is applied.
+     *
+     * @return the raw tick count
+     */
+    private long ticks() {
+
+        return instructionsPerTick != 0 ? instructionCounter.getAsLong() / instructionsPerTick
+                : System.nanoTime() / nanosPerTick;
+    }
+
+    /**
+     * Returns the current value of mtime.
+     *
+     * @return the number of ticks elapsed
+     */
+    public long getMtime() {
+
+        return ticks() + offset;
+    }
+
+    /**
+     * Sets mtime; it keeps advancing from the new value.
+     *
+     * @param mtime the new value of mtime
+     */
+    public void setMtime(final long mtime) {
+
+        offset = mtime - ticks();
+    }
+
+    /**
+     * Sets mtimecmp.
+     *
+     * @param mtimecmp the new value of mtimecmp, unsigned
+     */
+    public void setMtimecmp(final long mtimecmp) {
+
+        this.mtimecmp = mtimecmp;
+    }
+
+    /**
+     * Tells whether the timer interrupt is pending.
+     *
+     * @return true if mtime has reached mtimecmp
+     */
+    public boolean isPending() {
+
+        return Long.compareUnsigned(getMtime(), mtimecmp) >= 0;
+    }
+
+    /**
+     * Schedules the next interrupt one period from now, when the timer re-arms itself.
+     */
+    public void rearm() {
+
+        if (period > 0) {
+            mtimecmp = getMtime() + period;
+        }
+    }
+
+    /**
+     * Returns how many more instructions can retire before the timer interrupt becomes pending. Only known
+     * when mtime is driven by retired instructions.
+     *
+     * @return the number of instructions, or Long.MAX_VALUE if unknown or never
+     */
+    public long instructionsUntilPending() {
+
+        if (instructionsPerTick == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (isPending()) {
+            return 0;
+        }
+        final long ticks = mtimecmp - getMtime(); // Negative only if mtimecmp is out of reach
+        if (ticks < 0 || ticks > Long.MAX_VALUE / instructionsPerTick) {
+            return Long.MAX_VALUE;
+        }
+        final long instructions = instructionCounter.getAsLong();
+        return ticks * instructionsPerTick - instructions % instructionsPerTick;
+    }
+
+    /**
+     * Reads a 32-bit register word.
+     *
+     * @param offset the offset of the word from the base address
+     * @return the value of the word
+     */
+    @Override
+    public int read(final int offset) {
+
+        return switch (offset) {
+            case MTIMECMP -> (int) mtimecmp;
+            case MTIMECMP + 4 -> (int) (mtimecmp >>> 32);
+            case MTIME -> (int) getMtime();
+            case MTIME + 4 -> (int) (getMtime() >>> 32);
+            default -> 0;
+        };
+    }
+
+    /**
+     * Writes a 32-bit register word. Writing mtimecmp hands control of the timer to the program, so it stops
+     * re-arming itself.
+     *
+     * @param offset the offset of the word from the base address
+     * @param value  the value of the word
+     */
+    @Override
+    public void write(final int offset, final int value) {
+
+        switch (offset) {
+            case MTIMECMP -> {
+                mtimecmp = (mtimecmp & 0xFFFFFFFF00000000L) | (value & 0xFFFFFFFFL);
+                period = 0;
+            }
+            case MTIMECMP + 4 -> {
+                mtimecmp = (mtimecmp & 0xFFFFFFFFL) | ((long) value << 32);
+                period = 0;
+            }
+            case MTIME -> setMtime((getMtime() & 0xFFFFFFFF00000000L) | (value & 0xFFFFFFFFL));
+            case MTIME + 4 -> setMtime((getMtime() & 0xFFFFFFFFL) | ((long) value << 32));
+            default -> {
+                return;
+            }
+        }
+        if (writeListener != null) {
+            writeListener.run();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package br.faustech;
+
+import br.faustech.cpu.ExitReason;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.RESULT_ADDRESS;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MachineTest {
+
+    private static final int MACHINES = 48;
+
+    private static final int THREADS = 8;
+
+    /**
+     * Runs a machine that sums 0 to n - 1 into memory position 1024, and checks its result against the
+     * machine's own parameters.
+     *
+     * @param index the index of the machine, which selects its memory size, loop count and execution mode
+     */
+    private static void runMachine(final int index) {
+
+        final int memorySize = 4096 * (1 + index % 4);
+        final int n = 100 + index * 37;
+
+        final Machine machine = new Machine(memorySize, WIDTH, HEIGHT);
+        machine.load(TestMachines.sumProgram(n));
+        switch (index % 3) {
+            case 1 -> machine.getCpu().setBlockExecution(true);
+            case 2 -> machine.getCpu().enableCompilation(10);
+        }
+
+        assertEquals(ExitReason.EBREAK, machine.run(Long.MAX_VALUE, 60_000));
+        assertEquals(n * (n - 1) / 2, machine.getBus().load32(RESULT_ADDRESS));
+        assertEquals(5 + 4L * n, machine.getCpu().getInstructionCount());
+        assertEquals(memorySize - 4, machine.getCpu().getRegisters()[8]);
+        assertEquals(memorySize, machine.getMemory().getMemorySize());
+    }
+
+    @Test
+    public void concurrentMachinesTest() throws InterruptedException, ExecutionException {
+
+        Main.setLogEnabled(false);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < MACHINES; i++) {
+                final int index = i;
+                results.add(executor.submit(() -> runMachine(index)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+            Main.setLogEnabled(true);
+        }
+    }
+
+}
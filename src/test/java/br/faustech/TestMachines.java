@@ -0,0 +1,134 @@
+package br.faustech;
+
+import br.faustech.bus.Bus;
+import br.faustech.cpu.ExitReason;
+import br.faustech.memory.DenseMemory;
+import br.faustech.memory.FrameBuffer;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guest programs and machine setup shared by the tests. The programs are hand-assembled RV32I, one commented
+ * instruction per word, and are loaded at address 0 unless a test says otherwise.
+ */
+public final class TestMachines {
+
+    public static final int WIDTH = 320; // Width of the framebuffer of the test machines
+
+    public static final int HEIGHT = 240; // Height of the framebuffer of the test machines
+
+    public static final int MEMORY_SIZE = 4096; // RAM of the small test machines
+
+    public static final int RESULT_ADDRESS = 1024; // Where the sum programs store their running sum
+
+    private static final long ALLOCATION_SLACK = 4096; // Bytes a measured run may allocate, e.g. for the JIT
+
+    private static final int[] SUM_PROGRAM = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b00000000000000000000000100010011, // addi x2, x0, N
+            0b00000000000000000000000110010011, // addi x3, x0, 0
+            0b01000000000000000000001000010011, // addi x4, x0, 1024
+            0b00000000000100011000000110110011, // add x3, x3, x1
+            0b00000000001100100010000000100011, // sw x3, 0(x4)
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b11111110001000001100101011100011, // blt x1, x2, -12
+            0b00000000000100000000000001110011, // ebreak
+    };
+
+    private static final int[] SEEDED_SUM_PROGRAM = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b00000000000000000000000110010011, // addi x3, x0, 0
+            0b01000000000000000000001000010011, // addi x4, x0, 1024
+            0b00000000000100011000000110110011, // add x3, x3, x1
+            0b00000000001100100010000000100011, // sw x3, 0(x4)
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b11111110101000001100101011100011, // blt x1, x10, -12
+            0b00000000000100000000000001110011, // ebreak
+    };
+
+    private TestMachines() {
+
+    }
+
+    /**
+     * Returns a program that sums 0 to n - 1 into {@link #RESULT_ADDRESS} and stops at an ebreak, after
+     * retiring 5 + 4n instructions for n of at least 1.
+     *
+     * @param n the number of terms, below 2048
+     * @return a new copy of the program
+     */
+    public static int[] sumProgram(final int n) {
+
+        final int[] program = SUM_PROGRAM.clone();
+        program[1] |= n << 20;
+        return program;
+    }
+
+    /**
+     * Returns a program that sums 0 to a0 - 1 into {@link #RESULT_ADDRESS} and stops at an ebreak, after
+     * retiring 4 + 4 * max(a0, 1) instructions.
+     *
+     * @return a new copy of the program
+     */
+    public static int[] seededSumProgram() {
+
+        return SEEDED_SUM_PROGRAM.clone();
+    }
+
+    /**
+     * Creates a bus over a small dense RAM and a float framebuffer, with a program written at address 0.
+     *
+     * @param program the program to write
+     * @return the bus
+     */
+    public static Bus createBus(final int[] program) {
+
+        final Bus bus = new Bus(new FrameBuffer(WIDTH, HEIGHT), new DenseMemory(MEMORY_SIZE));
+        bus.write(0, program);
+        return bus;
+    }
+
+    /**
+     * Runs a machine until it stops on its own, with logging disabled.
+     *
+     * @param machine the machine to run
+     * @return the reason the machine stopped
+     */
+    public static ExitReason runQuietly(final Machine machine) {
+
+        Main.setLogEnabled(false);
+        try {
+            return machine.run(Long.MAX_VALUE, 60_000);
+        } finally {
+            Main.setLogEnabled(true);
+        }
+    }
+
+    /**
+     * Returns the number of bytes the calling thread has allocated so far.
+     *
+     * @return the allocated bytes
+     */
+    public static long allocatedBytes() {
+
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Asserts that some already warmed-up work allocates no more than a few bytes, so its allocation stays flat
+     * no matter how long it runs.
+     *
+     * @param what describes the work in the failure message
+     * @param work the work to measure
+     */
+    public static void assertAllocationFree(final String what, final Runnable work) {
+
+        final long before = allocatedBytes();
+        work.run();
+        final long allocated = allocatedBytes() - before;
+        assertTrue(allocated < ALLOCATION_SLACK, what + " allocated " + allocated + " bytes");
+    }
+
+}
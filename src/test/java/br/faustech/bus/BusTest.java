@@ -0,0 +1,133 @@
+package br.faustech.bus;
+
+import br.faustech.TestMachines;
+import br.faustech.comum.Device;
+import br.faustech.memory.DenseMemory;
+import br.faustech.memory.FrameBuffer;
+import br.faustech.memory.MemoryException;
+import br.faustech.memory.SparseMemory;
+import br.faustech.timer.Clint;
+import org.junit.jupiter.api.Test;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.MEMORY_SIZE;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BusTest {
+
+    private static final int DEVICE_ADDRESS = 0x10000000;
+
+    /**
+     * A device with two registers, the second one holding the last value written to the first.
+     */
+    private static final class Registers implements Device {
+
+        private final int[] words = new int[2];
+
+        @Override
+        public int read(final int offset) {
+
+            return words[offset / 4];
+        }
+
+        @Override
+        public void write(final int offset, final int value) {
+
+            words[offset / 4] = value;
+            words[1] = value;
+        }
+
+    }
+
+    private static Bus createBus() {
+
+        return new Bus(new FrameBuffer(WIDTH, HEIGHT), new DenseMemory(MEMORY_SIZE));
+    }
+
+    @Test
+    public void registerDeviceTest() {
+
+        final Bus bus = createBus();
+        bus.registerDevice(DEVICE_ADDRESS, 8, new Registers());
+
+        bus.store32(DEVICE_ADDRESS, 0x12345678);
+        assertEquals(0x12345678, bus.load32(DEVICE_ADDRESS));
+        assertEquals(0x12345678, bus.read(DEVICE_ADDRESS + 4, DEVICE_ADDRESS + 8)[0]);
+        assertEquals(0x78, bus.load8(DEVICE_ADDRESS));
+        assertEquals(0x5678, bus.load16(DEVICE_ADDRESS));
+
+        // The rest of the page and the pages around the device are not mapped
+        assertThrows(MemoryException.class, () -> bus.load32(DEVICE_ADDRESS + 8));
+        assertThrows(MemoryException.class, () -> bus.load32(DEVICE_ADDRESS - 4));
+        assertThrows(MemoryException.class, () -> bus.store32(DEVICE_ADDRESS + 4096, 0));
+    }
+
+    @Test
+    public void registerOverlappingDeviceTest() {
+
+        final Bus bus = createBus();
+        bus.registerDevice(DEVICE_ADDRESS, 8, new Registers());
+
+        assertThrows(IllegalArgumentException.class, () -> bus.registerDevice(DEVICE_ADDRESS + 64, 8, new Registers()));
+        assertThrows(IllegalArgumentException.class, () -> bus.registerDevice(MEMORY_SIZE, 4, new Registers()));
+        assertThrows(IllegalArgumentException.class, () -> bus.registerDevice(-4096, 8, new Registers()));
+        assertThrows(IllegalArgumentException.class, () -> bus.registerDevice(0, 8, new Registers()));
+    }
+
+    @Test
+    public void deviceWindowTest() {
+
+        // RAM covering the old timer address no longer hides the timer
+        final Bus bus = new Bus(new FrameBuffer(WIDTH, HEIGHT), new SparseMemory(1 << 30));
+        bus.store32(0x02004000, 1234);
+        assertEquals(1234, bus.load32(0x02004000));
+        assertEquals(-1, bus.getClint().getMtimecmp());
+        bus.write(Clint.BASE_ADDRESS + Clint.MTIMECMP, new int[]{1234, 0});
+        assertEquals(1234, bus.getClint().getMtimecmp());
+
+        // RAM and frame buffer reaching into the device window are refused instead of hiding the devices
+        assertThrows(IllegalArgumentException.class,
+                () -> new Bus(new FrameBuffer(WIDTH, HEIGHT), new SparseMemory(Bus.DEVICE_BASE - 4096)));
+    }
+
+    @Test
+    public void deviceTableTest() {
+
+        // The page table only holds tables where devices are mapped, however far the timer is from the RAM
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT);
+        final SparseMemory memory = new SparseMemory(1 << 30);
+        final long before = TestMachines.allocatedBytes();
+        final Bus bus = new Bus(frameBuffer, memory);
+        assertTrue(TestMachines.allocatedBytes() - before < 64 * 1024);
+        assertEquals(2, bus.getAllocatedTables());
+
+        // A device across two tables is mapped in both
+        final int address = (Bus.TABLE_PAGES << Bus.PAGE_SHIFT) * 300 - 4;
+        bus.registerDevice(address, 8, new Registers());
+        assertEquals(4, bus.getAllocatedTables());
+        bus.store32(address, 42);
+        assertEquals(42, bus.load32(address + 4));
+        assertThrows(MemoryException.class, () -> bus.load32(address + 8));
+    }
+
+    @Test
+    public void ramAndFrameBufferTest() {
+
+        final Bus bus = createBus();
+
+        bus.store32(MEMORY_SIZE - 4, 0xCAFEBABE);
+        assertEquals(0xCAFEBABE, bus.load32(MEMORY_SIZE - 4));
+        assertEquals(0xCA, bus.load8(MEMORY_SIZE - 1));
+
+        // A word store to the first frame buffer word swaps the buffers, and the pixels follow it
+        bus.store32(MEMORY_SIZE + 4, 0x00FFFFFF);
+        assertEquals(0, bus.load32(MEMORY_SIZE + 4));
+        bus.store32(MEMORY_SIZE, 0);
+        assertEquals(Float.floatToIntBits(1.0f), bus.load32(MEMORY_SIZE + 4));
+        assertThrows(MemoryException.class, () -> bus.load32(-4));
+    }
+
+}
@@ -0,0 +1,80 @@
+package br.faustech.cpu;
+
+import br.faustech.TestMachines;
+import br.faustech.bus.Bus;
+import br.faustech.memory.FrameBuffer;
+import br.faustech.memory.SparseMemory;
+import org.junit.jupiter.api.Test;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlockCacheTest {
+
+    @Test
+    public void blockCacheTest() {
+
+        final Bus bus = TestMachines.createBus(new int[]{
+                0b00000000000100000000000010010011, // addi x1, x0, 1
+                0b00000000000100001000000010010011, // addi x1, x1, 1
+                0b11111110000000001001111011100011, // bne x1, x0, -4
+                0b00000000000100000000000001110011, // ebreak
+        });
+        final BlockCache blockCache = new BlockCache(bus);
+
+        BasicBlock block = blockCache.lookup(0);
+        assertEquals(0, block.getStartAddress());
+        assertEquals(12, block.getEndAddress());
+        assertEquals(Opcode.BNE, block.getInstructions()[2].getOpcode());
+        assertEquals(-4, block.getInstructions()[2].getImm());
+        assertSame(block, blockCache.lookup(0));
+        assertEquals(1, blockCache.getTranslations());
+
+        // A write outside translated code keeps the block
+        bus.write(1024, new int[]{42});
+        assertSame(block, blockCache.lookup(0));
+        assertEquals(0, blockCache.getFlushes());
+
+        // A write into the block flushes the cache
+        bus.write(4, new int[]{0b00000000001000001000000010010011}); // addi x1, x1, 2
+        assertEquals(1, blockCache.getFlushes());
+        BasicBlock retranslated = blockCache.lookup(0);
+        assertNotSame(block, retranslated);
+        assertEquals(2, retranslated.getInstructions()[1].getImm());
+    }
+
+    @Test
+    public void blockAcrossPagesTest() {
+
+        // Creating the caches of a large sparse machine allocates little until code is fetched
+        final Bus bus = new Bus(new FrameBuffer(WIDTH, HEIGHT), new SparseMemory(256 * 1024 * 1024));
+        final long before = TestMachines.allocatedBytes();
+        final BlockCache blockCache = new BlockCache(bus);
+        final DecodeCache decodeCache = new DecodeCache(bus);
+        assertTrue(TestMachines.allocatedBytes() - before < 256 * 1024);
+
+        // A block starting at the end of one page of the tables and ending in the next
+        final int address = 2 * 4096 - 4;
+        bus.write(address, new int[]{
+                0b00000000000100000000000010010011, // addi x1, x0, 1
+                0b00000000000100000000000001110011, // ebreak
+        });
+        final BasicBlock block = blockCache.lookup(address);
+        assertEquals(address + 8, block.getEndAddress());
+        assertEquals(Opcode.ADDI, decodeCache.fetch(address).getOpcode());
+        assertEquals(Opcode.EBREAK, decodeCache.fetch(address + 4).getOpcode());
+
+        // A write to its second word, in the next page, flushes the cache and invalidates the decoded word
+        bus.write(address + 4, new int[]{0b00000000001000000000000010010011}); // addi x1, x0, 2
+        assertEquals(1, blockCache.getFlushes());
+        assertEquals(2, blockCache.lookup(address).getInstructions()[1].getImm());
+        assertEquals(2, decodeCache.fetch(address + 4).getImm());
+        assertEquals(1, decodeCache.fetch(address).getImm());
+        assertEquals(1, decodeCache.getHits());
+    }
+
+}
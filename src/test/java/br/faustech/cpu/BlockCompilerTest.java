@@ -0,0 +1,110 @@
+package br.faustech.cpu;
+
+import br.faustech.TestMachines;
+import br.faustech.bus.Bus;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BlockCompilerTest {
+
+    private static final int[] PROGRAM = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b00000110010000000000000100010011, // addi x2, x0, 100
+            0b00000000000000000000000110010011, // addi x3, x0, 0
+            0b01000000000000000000001000010011, // addi x4, x0, 1024
+            0b00000000000100011000000110110011, // add x3, x3, x1
+            0b00000000001100100010000000100011, // sw x3, 0(x4)
+            0b00000000000000100010001010000011, // lw x5, 0(x4)
+            0b00000000000100101100001100110011, // xor x6, x5, x1
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b11111110001000001100011011100011, // blt x1, x2, -20
+            0b00000000000100000000000001110011, // ebreak
+    };
+
+    private static final int[] FAULTING_PROGRAM = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b00000000000000000000001000010011, // addi x4, x0, 0
+            0b00000000000001000000001110110111, // lui x7, 0x40
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b00000000000000100010001010000011, // lw x5, 0(x4)
+            0b00000000010100110000001100110011, // add x6, x6, x5
+            0b00000000011100100000001000110011, // add x4, x4, x7
+            0b11111111000111111111000001101111, // jal x0, -16
+    };
+
+    private static final int FAULTING_LOAD = 16; // Address of the lw, which faults once x4 leaves the mapped range
+
+    private static int runUntilEbreak(final boolean compile) {
+
+        final Bus bus = TestMachines.createBus(PROGRAM);
+
+        final CPU cpu = new CPU(bus);
+        if (compile) {
+            cpu.enableCompilation(1);
+        } else {
+            cpu.setBlockExecution(true);
+        }
+
+        // The loop exits at the ebreak, which is left for the interpreter and never executed here
+        for (int i = 0; i < 100; i++) {
+            cpu.processNextBlock();
+        }
+        if (compile) {
+            assertEquals(2, cpu.getBlockCompiler().getCompilations());
+        }
+        return bus.read(1024, 1028)[0];
+    }
+
+    @Test
+    public void blockCompilerTest() {
+
+        assertEquals(4950, runUntilEbreak(false));
+        assertEquals(4950, runUntilEbreak(true));
+    }
+
+    /**
+     * Runs the faulting program until its load faults.
+     *
+     * @param mode 0 to interpret instructions, 1 to interpret blocks, 2 to compile blocks
+     * @return the CPU after the fault
+     */
+    private static CPU runUntilFault(final int mode) {
+
+        final CPU cpu = new CPU(TestMachines.createBus(FAULTING_PROGRAM));
+        if (mode == 2) {
+            cpu.enableCompilation(1);
+        } else {
+            cpu.setBlockExecution(mode == 1);
+        }
+        assertThrows(RuntimeException.class, () -> {
+            for (int i = 0; i < 1000; i++) {
+                if (mode == 0) {
+                    cpu.processNextInstruction();
+                } else {
+                    cpu.processNextBlock();
+                }
+            }
+        });
+        return cpu;
+    }
+
+    @Test
+    public void faultInCompiledBlockTest() {
+
+        final CPU interpreted = runUntilFault(0);
+        assertEquals(FAULTING_LOAD, interpreted.getProgramCounter());
+        assertEquals(4, interpreted.getRegisters()[1]); // The fourth iteration faults, after bumping x1
+
+        // The compiled loop leaves the same registers, retired count and PC as the interpreter
+        for (int mode = 1; mode <= 2; mode++) {
+            final CPU cpu = runUntilFault(mode);
+            assertArrayEquals(interpreted.getRegisters(), cpu.getRegisters());
+            assertEquals(interpreted.getInstructionCount(), cpu.getInstructionCount());
+            assertEquals(interpreted.getProgramCounter(), cpu.getProgramCounter());
+        }
+    }
+
+}
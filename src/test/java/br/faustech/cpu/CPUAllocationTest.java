@@ -0,0 +1,71 @@
+package br.faustech.cpu;
+
+import br.faustech.Main;
+import br.faustech.TestMachines;
+import br.faustech.bus.Bus;
+import org.junit.jupiter.api.Test;
+
+public class CPUAllocationTest {
+
+    private static final int[] ALU_PROGRAM = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b00010000000000000000000100110111, // lui x2, 0x10000
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b00000000001000001001000110010011, // slli x3, x1, 2
+            0b00000000000100011100001000110011, // xor x4, x3, x1
+            0b00000000001100100011001010110011, // sltu x5, x4, x3
+            0b01000000010100100000001100110011, // sub x6, x4, x5
+            0b00000000100000000000001111101111, // jal x7, 8
+            0b00000000000000000000000000010011, // addi x0, x0, 0
+            0b11111110001000001100001011100011, // blt x1, x2, -28
+            0b00000000000100000000000001110011, // ebreak
+    };
+
+    private static final int[] LOAD_STORE_PROGRAM = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b01000000000000000000001000010011, // addi x4, x0, 1024
+            0b00000000000100100010000000100011, // sw x1, 0(x4)
+            0b00000000000000100010001010000011, // lw x5, 0(x4)
+            0b00000000010100100001001000100011, // sh x5, 4(x4)
+            0b00000000010000100101001100000011, // lhu x6, 4(x4)
+            0b00000000011000100000010000100011, // sb x6, 8(x4)
+            0b00000000100000100000001110000011, // lb x7, 8(x4)
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b11111110010111111111000001101111, // jal x0, -28
+    };
+
+    private static void assertAllocationFree(final int[] program) {
+
+        Main.setLogEnabled(false);
+        try {
+            final Bus bus = TestMachines.createBus(program);
+            final CPU cpu = new CPU(bus);
+
+            // Warm up the decode cache and the JVM
+            for (int i = 0; i < 100_000; i++) {
+                cpu.processNextInstruction();
+            }
+
+            TestMachines.assertAllocationFree("Retiring 10000000 instructions", () -> {
+                for (int i = 0; i < 10_000_000; i++) {
+                    cpu.processNextInstruction();
+                }
+            });
+        } finally {
+            Main.setLogEnabled(true);
+        }
+    }
+
+    @Test
+    public void allocationTest() {
+
+        assertAllocationFree(ALU_PROGRAM);
+    }
+
+    @Test
+    public void loadStoreAllocationTest() {
+
+        assertAllocationFree(LOAD_STORE_PROGRAM);
+    }
+
+}
@@ -0,0 +1,77 @@
+package br.faustech.cpu;
+
+import br.faustech.TestMachines;
+import br.faustech.bus.Bus;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CPURunTest {
+
+    private static final int[] PROGRAM = {
+            0b00000000000000000000000010010011, // addi x1, x0, 0
+            0b00000110010000000000000100010011, // addi x2, x0, 100
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b11111110001000001100111011100011, // blt x1, x2, -4
+            0b00000000000100000000000001110011, // ebreak
+    };
+
+    private static final int[] SUB_WORD_PROGRAM = {
+            0b01000000000000000000001000010011, // addi x4, x0, 1024
+            0b11111010101000000000001010010011, // addi x5, x0, -86
+            0b00000000010100100000000010100011, // sb x5, 1(x4)
+            0b11111111111100000000001100010011, // addi x6, x0, -1
+            0b00000000011000100001001100100011, // sh x6, 6(x4)
+            0b00000000000100100000001110000011, // lb x7, 1(x4)
+            0b00000000000100100100010000000011, // lbu x8, 1(x4)
+            0b00000000000000100010010010000011, // lw x9, 0(x4)
+            0b00000000010000100010010100000011, // lw x10, 4(x4)
+            0b00000000011000100001010110000011, // lh x11, 6(x4)
+            0b00000000000100000000000001110011, // ebreak
+    };
+
+    private static CPU createCpu() {
+
+        final Bus bus = TestMachines.createBus(PROGRAM);
+        return new CPU(bus);
+    }
+
+    @Test
+    public void runUntilEbreakTest() {
+
+        final CPU cpu = createCpu();
+
+        assertEquals(ExitReason.EBREAK, cpu.runUntilExit(Long.MAX_VALUE, 10_000));
+        assertEquals(203, cpu.getInstructionCount());
+        assertEquals(100, cpu.getRegisters()[1]);
+    }
+
+    @Test
+    public void runUntilInstructionLimitTest() {
+
+        final CPU cpu = createCpu();
+
+        assertEquals(ExitReason.INSTRUCTION_LIMIT, cpu.runUntilExit(50, 10_000));
+        assertEquals(50, cpu.getInstructionCount());
+        assertEquals(24, cpu.getRegisters()[1]);
+    }
+
+    @Test
+    public void subWordStoreTest() {
+
+        final Bus bus = TestMachines.createBus(SUB_WORD_PROGRAM);
+        bus.store32(1024, 0x11223344);
+        bus.store32(1028, 0x55667788);
+        final CPU cpu = new CPU(bus);
+
+        assertEquals(ExitReason.EBREAK, cpu.runUntilExit(Long.MAX_VALUE, 10_000));
+        final int[] registers = cpu.getRegisters();
+        // Byte and halfword stores must leave the rest of the word untouched
+        assertEquals(0x1122AA44, registers[9]);
+        assertEquals(0xFFFF7788, registers[10]);
+        assertEquals(-86, registers[7]);
+        assertEquals(0xAA, registers[8]);
+        assertEquals(-1, registers[11]);
+    }
+
+}
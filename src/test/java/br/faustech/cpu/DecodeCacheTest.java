@@ -0,0 +1,44 @@
+package br.faustech.cpu;
+
+import br.faustech.TestMachines;
+import br.faustech.bus.Bus;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DecodeCacheTest {
+
+    @Test
+    public void decodeCacheTest() {
+
+        // addi x1, x0, 1
+        final Bus bus = TestMachines.createBus(new int[]{0b00000000000100000000000010010011});
+        final DecodeCache decodeCache = new DecodeCache(bus);
+
+        DecodedInstruction instruction = decodeCache.fetch(0);
+        assertEquals(Opcode.ADDI, instruction.getOpcode());
+        assertEquals(1, instruction.getImm());
+        assertEquals(0, decodeCache.getHits());
+        assertEquals(1, decodeCache.getMisses());
+
+        decodeCache.fetch(0);
+        assertEquals(1, decodeCache.getHits());
+        assertEquals(1, decodeCache.getMisses());
+
+        // Overwrite the cached word with addi x1, x0, -2
+        bus.write(0, new int[]{0b11111111111000000000000010010011});
+
+        instruction = decodeCache.fetch(0);
+        assertEquals(Opcode.ADDI, instruction.getOpcode());
+        assertEquals(-2, instruction.getImm());
+        assertEquals(1, decodeCache.getHits());
+        assertEquals(2, decodeCache.getMisses());
+
+        // A store to a neighbouring word leaves the cached entry alone
+        bus.write(4, new int[]{0});
+        decodeCache.fetch(0);
+        assertEquals(2, decodeCache.getHits());
+        assertEquals(2, decodeCache.getMisses());
+    }
+
+}
@@ -0,0 +1,59 @@
+package br.faustech.fleet;
+
+import br.faustech.Main;
+import br.faustech.TestMachines;
+import br.faustech.cpu.ExitReason;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.MEMORY_SIZE;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class FleetRunnerTest {
+
+    private static final int JOBS = 64;
+
+    private static final int[] PROGRAM = TestMachines.seededSumProgram();
+
+    @Test
+    public void fleetRunnerTest() throws InterruptedException {
+
+        Main.setLogEnabled(false);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final List<FleetJob> jobs = new ArrayList<>();
+            for (int seed = 0; seed < JOBS; seed++) {
+                jobs.add(new FleetJob("sum#" + seed, PROGRAM, seed));
+            }
+            // The last job runs out of budget: its loop needs 4 * 2000 + 4 instructions
+            jobs.add(new FleetJob("budget", PROGRAM, 2000));
+
+            final FleetRunner runner = new FleetRunner(MEMORY_SIZE, WIDTH, HEIGHT, 5000, 60_000,
+                    cpu -> cpu.setBlockExecution(true));
+            final List<FleetJobResult> results = runner.run(jobs, executor);
+
+            for (int seed = 0; seed < JOBS; seed++) {
+                final FleetJobResult result = results.get(seed);
+                assertEquals("sum#" + seed, result.name());
+                assertEquals(ExitReason.EBREAK, result.exitReason());
+                assertEquals(4 + 4L * Math.max(seed, 1), result.instructions());
+            }
+            assertNotEquals(results.get(2).checksum(), results.get(3).checksum());
+            assertEquals(ExitReason.INSTRUCTION_LIMIT, results.get(JOBS).exitReason());
+
+            // The same job gives the same final memory whatever the execution mode
+            final FleetRunner interpreter = new FleetRunner(MEMORY_SIZE, WIDTH, HEIGHT, 5000, 60_000, cpu -> {
+            });
+            assertEquals(results.get(7).checksum(), interpreter.runJob(jobs.get(7)).checksum());
+        } finally {
+            Main.setLogEnabled(true);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package br.faustech.gpu;
+
+import br.faustech.memory.FrameBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameRecorderTest {
+
+    /**
+     * An encoder that takes a while per frame and keeps the first and last pixel of every frame.
+     */
+    private static final class SlowEncoder implements FrameEncoder {
+
+        private final long delay; // Milliseconds spent on each frame
+
+        private final List<int[]> frames = new ArrayList<>(); // First and last pixel of the encoded frames
+
+        private boolean closed; // Whether the encoder was closed
+
+        private SlowEncoder(final long delay) {
+
+            this.delay = delay;
+        }
+
+        @Override
+        public void encode(final int[] pixels) throws IOException {
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            frames.add(new int[]{pixels[0], pixels[pixels.length - 1]});
+        }
+
+        @Override
+        public void close() {
+
+            closed = true;
+        }
+
+    }
+
+    /**
+     * Draws a frame numbered by its first and last pixel and swaps it in.
+     *
+     * @param frameBuffer the framebuffer to draw on
+     * @param frame       the number of the frame
+     */
+    private static void drawFrame(final FrameBuffer frameBuffer, final int frame) {
+
+        frameBuffer.writePixel(0, frame);
+        frameBuffer.writePixel((WIDTH * HEIGHT - 1) * 4, frame << 8);
+        frameBuffer.swap();
+    }
+
+    @Test
+    public void blockingRecordingTest() throws IOException, InterruptedException {
+
+        for (boolean packed : new boolean[]{true, false}) {
+            final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT, packed);
+            final SlowEncoder encoder = new SlowEncoder(2);
+            final FrameRecorder recorder = new FrameRecorder(frameBuffer, encoder, 2, FrameRecorder.Policy.BLOCK);
+            recorder.start();
+            for (int frame = 1; frame <= 30; frame++) {
+                drawFrame(frameBuffer, frame);
+            }
+            recorder.close();
+            drawFrame(frameBuffer, 31); // Not recorded after closing
+
+            // Every frame is encoded, in order, as packed pixels
+            assertEquals(30, recorder.getEncodedFrames());
+            assertEquals(0, recorder.getDroppedFrames());
+            assertEquals(30, encoder.frames.size());
+            for (int frame = 1; frame <= 30; frame++) {
+                assertEquals(0xFF000000 | frame, encoder.frames.get(frame - 1)[0]);
+                assertEquals(0xFF000000 | frame << 8, encoder.frames.get(frame - 1)[1]);
+            }
+            assertTrue(encoder.closed);
+            assertTrue(recorder.getAverageLatencyNanos() > 0);
+            assertTrue(recorder.getMaxLatencyNanos() >= recorder.getAverageLatencyNanos());
+        }
+    }
+
+    @Test
+    public void droppingRecordingTest() throws IOException, InterruptedException {
+
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT, true);
+        final SlowEncoder encoder = new SlowEncoder(50);
+        final FrameRecorder recorder = new FrameRecorder(frameBuffer, encoder, 2, FrameRecorder.Policy.DROP);
+        recorder.start();
+        final long start = System.nanoTime();
+        for (int frame = 1; frame <= 40; frame++) {
+            drawFrame(frameBuffer, frame);
+        }
+        final long elapsed = System.nanoTime() - start;
+        recorder.close();
+
+        // The guest never waits for the encoder, which would take two seconds for all frames
+        assertTrue(elapsed < 1_000_000_000L);
+        assertTrue(recorder.getDroppedFrames() > 0);
+        assertEquals(recorder.getCapturedFrames(), recorder.getEncodedFrames());
+        assertEquals(40, recorder.getEncodedFrames() + recorder.getDroppedFrames());
+        assertEquals(1, encoder.frames.get(0)[0] & 0xFFFFFF); // The first frames fill the free buffers
+    }
+
+    @Test
+    public void encoderFailureTest() throws InterruptedException {
+
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT, true);
+        final IOException failure = new IOException("disk full");
+        final FrameRecorder recorder = new FrameRecorder(frameBuffer, new FrameEncoder() {
+
+            @Override
+            public void encode(final int[] pixels) throws IOException {
+
+                throw failure;
+            }
+
+            @Override
+            public void close() {
+
+            }
+        }, 4, FrameRecorder.Policy.BLOCK);
+        recorder.start();
+        for (int frame = 1; frame <= 10; frame++) {
+            drawFrame(frameBuffer, frame); // Never blocks once encoding has failed
+        }
+
+        assertSame(failure, assertThrows(IOException.class, recorder::close));
+        assertEquals(0, recorder.getEncodedFrames());
+        assertEquals(10, recorder.getDroppedFrames());
+        assertThrows(IllegalArgumentException.class,
+                () -> new FrameRecorder(frameBuffer, null, 0, FrameRecorder.Policy.DROP));
+    }
+
+}
@@ -1,8 +1,8 @@
 package br.faustech.gpu;
 
 import br.faustech.bus.Bus;
+import br.faustech.memory.DenseMemory;
 import br.faustech.memory.FrameBuffer;
-import br.faustech.memory.Memory;
 import org.junit.jupiter.api.Test;
 
 import java.lang.Thread.State;
@@ -16,16 +16,14 @@ public class GPUTest {
 
     private static final int HEIGHT = 240;
 
-    private static final int FRAME_BUFFER_SIZE = WIDTH * HEIGHT * 4;
-
     private static final int MEMORY_SIZE = 4096;
 
     @Test
     public void gpuTest() {
 
-        FrameBuffer frameBuffer = new FrameBuffer(FRAME_BUFFER_SIZE);
+        FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT);
 
-        Bus bus = new Bus(frameBuffer, new Memory(MEMORY_SIZE));
+        Bus bus = new Bus(frameBuffer, new DenseMemory(MEMORY_SIZE));
 
         VideoFrameToVertexArray videoProcessor = new VideoFrameToVertexArray(VIDEO_PATH, WIDTH, HEIGHT, bus, frameBuffer);
         videoProcessor.start();
@@ -0,0 +1,96 @@
+package br.faustech.gpu;
+
+import br.faustech.Machine;
+import br.faustech.Main;
+import br.faustech.memory.DenseMemory;
+import br.faustech.memory.FrameBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HeadlessDisplayTest {
+
+    private static final int MEMORY_SIZE = 4194304;
+
+    private static final long INSTRUCTIONS = 3_000_000;
+
+    private static final long EXPECTED_FRAMES = 13; // Frames the color demo swaps in within INSTRUCTIONS
+
+    private static final long EXPECTED_LAST_FRAME_HASH = 0x2a78c6c0e5979badL; // Hash of the last of those frames
+
+    private static final long EXPECTED_COMBINED_HASH = 0x439a18f4ec61b16bL; // Hash of all of those frames
+
+    /**
+     * Runs the color demo for a fixed number of instructions with a headless display attached.
+     *
+     * @param packed  whether to use a packed framebuffer
+     * @param display creates the display for the framebuffer
+     * @return the display after the run
+     * @throws IOException if the demo cannot be read
+     */
+    private static HeadlessDisplay runColorDemo(final boolean packed,
+                                                final Function<FrameBuffer, HeadlessDisplay> display)
+            throws IOException {
+
+        Main.setLogEnabled(false);
+        try {
+            final Machine machine = new Machine(new DenseMemory(MEMORY_SIZE), new FrameBuffer(WIDTH, HEIGHT, packed));
+            machine.load(new File("src/test/demos/color_demo.txt"));
+            machine.getCpu().getClint().useInstructionClock(1000);
+            final HeadlessDisplay headless = display.apply(machine.getFrameBuffer());
+            headless.open();
+            machine.run(INSTRUCTIONS, 60_000);
+            headless.close();
+            return headless;
+        } finally {
+            Main.setLogEnabled(true);
+        }
+    }
+
+    @Test
+    public void deterministicFramesTest() throws IOException {
+
+        // Pinned values catch a change in what the demo draws, not only a difference between runs
+        for (boolean packed : new boolean[]{true, false}) {
+            final HeadlessDisplay headless = runColorDemo(packed, HeadlessDisplay::new);
+            assertEquals(EXPECTED_FRAMES, headless.getFrames());
+            assertEquals(EXPECTED_LAST_FRAME_HASH, headless.getLastFrameHash());
+            assertEquals(EXPECTED_COMBINED_HASH, headless.getCombinedHash());
+        }
+    }
+
+    @Test
+    public void dumpFramesTest(@TempDir final Path directory) throws IOException {
+
+        final HeadlessDisplay png = runColorDemo(true, frameBuffer -> new HeadlessDisplay(frameBuffer,
+                frame -> true, directory, HeadlessDisplay.DumpFormat.PNG));
+        final HeadlessDisplay raw = runColorDemo(true, frameBuffer -> new HeadlessDisplay(frameBuffer,
+                frame -> true, directory, HeadlessDisplay.DumpFormat.RAW));
+        final long last = png.getFrames();
+
+        final BufferedImage image = ImageIO.read(directory.resolve(String.format("frame-%06d.png", last)).toFile());
+        final byte[] rgba = Files.readAllBytes(directory.resolve(String.format("frame-%06d.rgba", last)));
+        assertEquals(WIDTH * HEIGHT * 4, rgba.length);
+        for (int y = 0; y < HEIGHT; y += 7) {
+            for (int x = 0; x < WIDTH; x += 5) {
+                final int pixel = raw.getPixel(x, y);
+                final int offset = (y * WIDTH + x) * 4;
+                assertEquals(pixel, image.getRGB(x, y));
+                assertEquals(pixel, (rgba[offset + 3] & 0xFF) << 24 | (rgba[offset] & 0xFF) << 16
+                        | (rgba[offset + 1] & 0xFF) << 8 | (rgba[offset + 2] & 0xFF));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+package br.faustech.memory;
+
+import br.faustech.TestMachines;
+import br.faustech.bus.Bus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.MEMORY_SIZE;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameBufferTest {
+
+    @Test
+    public void packedFrameBufferTest() {
+
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT, true);
+        final Bus bus = new Bus(frameBuffer, new DenseMemory(MEMORY_SIZE));
+        final int pixels = MEMORY_SIZE + 4;
+
+        assertEquals(WIDTH * HEIGHT * 4, frameBuffer.getBufferSize());
+        bus.store32(pixels, 0x00FF8000);
+        bus.store32(pixels + (WIDTH * HEIGHT - 1) * 4, 0x123456);
+        assertEquals(0, frameBuffer.getPackedPixels()[0]); // Not displayed before the swap
+
+        bus.store32(MEMORY_SIZE, 1);
+        assertEquals(0, frameBuffer.getPackedPixels()[0]); // Not taken by the renderer yet
+        frameBuffer.takeDirtyRows(new BitSet());
+        assertEquals(0xFFFF8000, frameBuffer.getPackedPixels()[0]);
+        assertEquals(0xFF123456, frameBuffer.getPackedPixels()[WIDTH * HEIGHT - 1]);
+        assertEquals(0xFFFF8000, bus.load32(pixels));
+
+        assertThrows(MemoryException.class, () -> frameBuffer.writePixel(WIDTH * HEIGHT * 4, new int[]{0}));
+        assertThrows(IllegalStateException.class, frameBuffer::getRenderData);
+        assertThrows(IllegalStateException.class, () -> new FrameBuffer(WIDTH, HEIGHT).getPackedPixels());
+    }
+
+    @Test
+    public void dirtyRowsTest() {
+
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT, true);
+        final BitSet rows = new BitSet();
+        assertTrue(frameBuffer.takeDirtyRows(rows));
+        assertEquals(HEIGHT, rows.cardinality()); // The first frame uploads everything
+        assertFalse(frameBuffer.takeDirtyRows(rows));
+
+        frameBuffer.writePixel(4 * (3 * WIDTH + 10), 0x0000FF);
+        frameBuffer.writePixel(4 * (7 * WIDTH), 0x00FF00);
+        assertFalse(frameBuffer.takeDirtyRows(rows)); // Written rows count once they are swapped in
+        frameBuffer.swap();
+        assertTrue(frameBuffer.takeDirtyRows(rows));
+        assertEquals(BitSet.valueOf(new long[]{(1L << 3) | (1L << 7)}), rows);
+
+        // The back buffer keeps its contents, so a swap after drawing one more pixel keeps the others
+        frameBuffer.writePixel(4 * (3 * WIDTH + 11), 0xFF0000);
+        frameBuffer.swap();
+        assertTrue(frameBuffer.takeDirtyRows(rows));
+        assertEquals(BitSet.valueOf(new long[]{1L << 3}), rows);
+        assertEquals(0xFF0000FF, frameBuffer.getPackedPixels()[3 * WIDTH + 10]);
+        assertEquals(0xFFFF0000, frameBuffer.getPackedPixels()[3 * WIDTH + 11]);
+        assertEquals(0xFF00FF00, frameBuffer.getPackedPixels()[7 * WIDTH]);
+
+        final FrameBuffer floats = new FrameBuffer(WIDTH, HEIGHT);
+        floats.takeDirtyRows(rows);
+        floats.swap();
+        assertTrue(floats.takeDirtyRows(rows));
+        assertEquals(HEIGHT, rows.cardinality());
+    }
+
+    @Test
+    public void tripleBufferingTest() throws InterruptedException {
+
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT, true);
+        final int frames = 20_000;
+        final int[] expected = new int[WIDTH * HEIGHT];
+
+        // Every frame fills one row with the frame number, so a torn row would mix two values
+        final Thread guest = new Thread(() -> {
+            for (int frame = 1; frame <= frames; frame++) {
+                final int row = (frame * 7) % HEIGHT;
+                for (int x = 0; x < WIDTH; x++) {
+                    frameBuffer.writePixel(4 * (row * WIDTH + x), frame);
+                    expected[row * WIDTH + x] = 0xFF000000 | frame;
+                }
+                frameBuffer.swap();
+            }
+        });
+        guest.start();
+
+        // Mirror the frames the way the renderer does, from the dirty rows only
+        final IntBuffer texture = IntBuffer.allocate(WIDTH * HEIGHT);
+        final BitSet rows = new BitSet();
+        boolean running = true;
+        while (running) {
+            running = guest.isAlive();
+            if (frameBuffer.takeDirtyRows(rows)) {
+                frameBuffer.copyPackedRows(texture, 0, rows);
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                    for (int x = 1; x < WIDTH; x++) {
+                        assertEquals(texture.get(row * WIDTH), texture.get(row * WIDTH + x));
+                    }
+                }
+            }
+        }
+        guest.join();
+
+        frameBuffer.takeDirtyRows(rows);
+        frameBuffer.copyPackedRows(texture, 0, rows);
+        assertArrayEquals(expected, texture.array());
+    }
+
+    @Test
+    public void frameSequenceTest() {
+
+        for (boolean packed : new boolean[]{false, true}) {
+            final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT, packed);
+            final AtomicInteger notified = new AtomicInteger();
+            final Runnable listener = notified::incrementAndGet;
+            frameBuffer.addFrameListener(listener);
+            assertEquals(0, frameBuffer.getFrameSequence());
+
+            frameBuffer.writePixel(0, 0xFFFFFF);
+            assertEquals(0, frameBuffer.getFrameSequence()); // Drawing alone makes no new frame
+            frameBuffer.swap();
+            frameBuffer.swap();
+            assertEquals(2, frameBuffer.getFrameSequence());
+            assertEquals(2, notified.get());
+
+            frameBuffer.removeFrameListener(listener);
+            frameBuffer.swap();
+            assertEquals(3, frameBuffer.getFrameSequence());
+            assertEquals(2, notified.get());
+        }
+    }
+
+    @Test
+    public void writePixelTest() {
+
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT);
+        frameBuffer.writePixel(4 * (WIDTH + 1), 0x00FF8000);
+        frameBuffer.swap();
+
+        // Pixel (1, 1): four color floats, and a vertex with position, color and texture coordinates
+        final float[] color = frameBuffer.readFromPixelBufferAsFloats(16 * (WIDTH + 1), 16 * (WIDTH + 1) + 4);
+        assertArrayEquals(new float[]{1.0f, 128 / 255.0f, 0.0f, 1.0f}, color);
+        final float[] vertex = frameBuffer.readFromVertexBufferAsFloats(32 * (WIDTH + 1), 32 * (WIDTH + 1) + 8);
+        assertArrayEquals(new float[]{2.0f / WIDTH - 1, (HEIGHT - 1) * 2.0f / HEIGHT - 1, 1.0f, 128 / 255.0f, 0.0f,
+                1.0f, 1.0f / WIDTH, 1.0f / HEIGHT}, vertex, 1e-6f);
+    }
+
+    @Test
+    public void copyFrontTest() {
+
+        final FrameBuffer frameBuffer = new FrameBuffer(WIDTH, HEIGHT);
+        frameBuffer.writePixel(4 * (WIDTH + 1), 0x00FF8000);
+        frameBuffer.swap();
+        final ByteBuffer pixels = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 16 + 64).order(ByteOrder.nativeOrder());
+        final ByteBuffer vertices = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 32).order(ByteOrder.nativeOrder());
+        frameBuffer.copyFront(pixels, 64, vertices, 0);
+        assertEquals(128 / 255.0f, pixels.getFloat(64 + 16 * (WIDTH + 1) + 4));
+        assertEquals(1.0f / HEIGHT, vertices.getFloat(32 * (WIDTH + 1) + 28));
+
+        final FrameBuffer packed = new FrameBuffer(WIDTH, HEIGHT, true);
+        packed.writePixel(4 * (2 * WIDTH + 5), 0x123456);
+        packed.writePixel(4 * (9 * WIDTH), 0x654321);
+        packed.swap();
+        final IntBuffer words = IntBuffer.allocate(WIDTH * HEIGHT + 8);
+        final BitSet rows = new BitSet();
+        packed.takeDirtyRows(rows);
+        rows.clear();
+        rows.set(2);
+        packed.copyPackedRows(words, 8, rows);
+        assertEquals(0xFF123456, words.get(8 + 2 * WIDTH + 5));
+        assertEquals(0, words.get(8 + 9 * WIDTH)); // Only the requested rows are copied
+    }
+
+    private static void assertFillAllocationFree(final FrameBuffer frameBuffer) {
+
+        final Bus bus = new Bus(frameBuffer, new DenseMemory(MEMORY_SIZE));
+        final int pixels = MEMORY_SIZE + 4;
+        for (int frame = 0; frame < 20; frame++) {
+            for (int pixel = 0; pixel < WIDTH * HEIGHT; pixel++) {
+                bus.store32(pixels + pixel * 4, pixel);
+            }
+            bus.store32(MEMORY_SIZE, 1);
+        }
+
+        TestMachines.assertAllocationFree("Filling 100 frames", () -> {
+            for (int frame = 0; frame < 100; frame++) {
+                for (int pixel = 0; pixel < WIDTH * HEIGHT; pixel++) {
+                    bus.store32(pixels + pixel * 4, pixel + frame);
+                }
+                bus.store32(MEMORY_SIZE, 1);
+            }
+        });
+    }
+
+    @Test
+    public void fillAllocationTest() {
+
+        assertFillAllocationFree(new FrameBuffer(WIDTH, HEIGHT));
+        assertFillAllocationFree(new FrameBuffer(WIDTH, HEIGHT, true));
+    }
+
+}
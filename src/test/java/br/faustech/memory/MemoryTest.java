@@ -18,7 +18,7 @@ public class MemoryTest {
             addresses[i] = i;
         }
 
-        Memory memory = new Memory(memorySize);
+        Memory memory = new DenseMemory(memorySize);
 
         final byte[] data = new byte[30];
         for (int i = 0; i < data.length; i++) {
@@ -82,4 +82,25 @@ public class MemoryTest {
         assertThrows(MemoryException.class, () -> memory.read(20, 10));
     }
 
+    @Test
+    public void littleEndianAccessTest() throws MemoryException {
+
+        final Memory memory = new DenseMemory(64 * 1024 * 1024);
+
+        memory.store32(0x3FFFFF0, 0x11223344);
+        assertEquals(0x44, memory.load8(0x3FFFFF0));
+        assertEquals(0x3344, memory.load16(0x3FFFFF0));
+        assertEquals(0x1122, memory.load16(0x3FFFFF2));
+        assertEquals(0x11223344, memory.load32(0x3FFFFF0));
+        assertEquals("[68, 51, 34, 17]", Arrays.toString(memory.read(0x3FFFFF0, 0x3FFFFF4)));
+
+        memory.store8(0x3FFFFF1, 0xAB);
+        memory.store16(0x3FFFFF3, 0xCDEF);
+        assertEquals(0xEF22AB44, memory.load32(0x3FFFFF0));
+        assertEquals(0xCD, memory.load8(0x3FFFFF4));
+
+        assertThrows(MemoryException.class, () -> memory.load32(64 * 1024 * 1024 - 2));
+        assertThrows(MemoryException.class, () -> memory.store16(-1, 0));
+    }
+
 }
@@ -0,0 +1,98 @@
+package br.faustech.memory;
+
+import br.faustech.Machine;
+import br.faustech.TestMachines;
+import br.faustech.cpu.ExitReason;
+import org.junit.jupiter.api.Test;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.RESULT_ADDRESS;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SparseMemoryTest {
+
+    private static final int PAGE_SIZE = SparseMemory.PAGE_SIZE;
+
+    @Test
+    public void untouchedPagesTest() throws MemoryException {
+
+        final SparseMemory memory = new SparseMemory(1 << 30);
+
+        assertEquals(0, memory.load32(123456788));
+        assertEquals(0, memory.load8((1 << 30) - 1));
+        assertEquals(0, memory.getResidentPages());
+        assertEquals((1 << 30) / PAGE_SIZE, memory.getPageCount());
+
+        memory.store8(5 * PAGE_SIZE + 7, 0xAB);
+        assertEquals(0xAB, memory.load8(5 * PAGE_SIZE + 7));
+        assertEquals(1, memory.getResidentPages());
+        assertEquals(PAGE_SIZE, memory.getResidentBytes());
+        assertThrows(MemoryException.class, () -> memory.load32((1 << 30) - 2));
+    }
+
+    @Test
+    public void zeroWritesStayUntouchedTest() throws MemoryException {
+
+        final SparseMemory memory = new SparseMemory(4 * PAGE_SIZE);
+        final byte[] data = new byte[3 * PAGE_SIZE];
+
+        memory.write(100, data);
+        memory.store8(PAGE_SIZE, 0x100);
+        memory.store16(2 * PAGE_SIZE - 1, 0);
+        memory.store32(3 * PAGE_SIZE - 2, 0);
+        memory.writeFromInt(8, new int[]{0, 0});
+        assertEquals(0, memory.getResidentPages());
+
+        data[PAGE_SIZE] = 1;
+        memory.write(100, data);
+        assertEquals(1, memory.getResidentPages());
+        assertArrayEquals(data, memory.read(100, 100 + data.length));
+
+        // Zeros stored to a resident page still overwrite it
+        memory.store32(3 * PAGE_SIZE + 200, 0x12345678);
+        memory.store16(3 * PAGE_SIZE + 200, 0);
+        assertEquals(0x12340000, memory.load32(3 * PAGE_SIZE + 200));
+        assertEquals(2, memory.getResidentPages());
+    }
+
+    @Test
+    public void matchesDenseMemoryTest() throws MemoryException {
+
+        // A size that is not a whole number of pages, with accesses that straddle page boundaries
+        final int size = 3 * PAGE_SIZE + 100;
+        final Memory dense = new DenseMemory(size);
+        final SparseMemory sparse = new SparseMemory(size);
+
+        for (Memory memory : new Memory[]{dense, sparse}) {
+            memory.store32(PAGE_SIZE - 2, 0x11223344);
+            memory.store16(2 * PAGE_SIZE - 1, 0xBEEF);
+            memory.writeFromInt(3 * PAGE_SIZE - 4, new int[]{0xCAFEBABE, 0x55667788});
+            memory.store8(size - 1, 0x7F);
+        }
+
+        assertEquals(dense.load32(PAGE_SIZE - 2), sparse.load32(PAGE_SIZE - 2));
+        assertEquals(0x11223344, sparse.load32(PAGE_SIZE - 2));
+        assertEquals(0xBEEF, sparse.load16(2 * PAGE_SIZE - 1));
+        assertArrayEquals(dense.readAsInt(0, size - 100), sparse.readAsInt(0, size - 100));
+        assertArrayEquals(dense.read(0, size), sparse.read(0, size));
+        assertEquals(dense.checksum(), sparse.checksum());
+        assertEquals(4, sparse.getResidentPages());
+    }
+
+    @Test
+    public void largeMachineTest() {
+
+        final Machine machine = new Machine(new SparseMemory(256 * 1024 * 1024), WIDTH,
+                HEIGHT);
+        machine.load(TestMachines.sumProgram(100));
+
+        assertEquals(ExitReason.EBREAK, TestMachines.runQuietly(machine));
+        assertEquals(4950, machine.getBus().load32(RESULT_ADDRESS));
+        // Only the page holding the program and its result is resident
+        assertEquals(PAGE_SIZE, machine.getMemory().getResidentBytes());
+    }
+
+}
@@ -0,0 +1,115 @@
+package br.faustech.reader;
+
+import br.faustech.Machine;
+import br.faustech.TestMachines;
+import br.faustech.cpu.ExitReason;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.RESULT_ADDRESS;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ElfLoaderTest {
+
+    private static final int MEMORY_SIZE = 64 * 1024;
+
+    private static final int LOAD_ADDRESS = 0x200;
+
+    private static final int BSS_SIZE = 2048;
+
+    private static final int[] PROGRAM = TestMachines.sumProgram(100);
+
+    /**
+     * Writes an ELF32 executable with a single PT_LOAD segment holding the program followed by a .bss.
+     *
+     * @param file    the file to write
+     * @param machine the e_machine field
+     * @param address the load address and entry point
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeElf(final File file, final int machine, final int address) throws IOException {
+
+        final int fileSize = PROGRAM.length * 4;
+        final ByteBuffer image = ByteBuffer.allocate(52 + 32 + fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        image.put(new byte[]{0x7F, 'E', 'L', 'F', 1, 1, 1});
+        image.putShort(16, (short) 2);               // e_type: executable
+        image.putShort(18, (short) machine);         // e_machine
+        image.putInt(20, 1);                         // e_version
+        image.putInt(24, address);                   // e_entry
+        image.putInt(28, 52);                        // e_phoff
+        image.putShort(40, (short) 52);              // e_ehsize
+        image.putShort(42, (short) 32);              // e_phentsize
+        image.putShort(44, (short) 1);               // e_phnum
+        image.putInt(52, 1);                         // p_type: PT_LOAD
+        image.putInt(56, 84);                        // p_offset
+        image.putInt(60, address);                   // p_vaddr
+        image.putInt(64, address);                   // p_paddr
+        image.putInt(68, fileSize);                  // p_filesz
+        image.putInt(72, fileSize + BSS_SIZE);       // p_memsz
+        image.position(84);
+        for (int word : PROGRAM) {
+            image.putInt(word);
+        }
+        Files.write(file.toPath(), image.array());
+    }
+
+    @Test
+    public void loadAndRunTest(@TempDir final Path directory) throws IOException {
+
+        final File file = directory.resolve("sum").toFile();
+        writeElf(file, 243, LOAD_ADDRESS);
+        assertTrue(ElfLoader.isElf(file));
+
+        final Machine machine = new Machine(MEMORY_SIZE, WIDTH, HEIGHT);
+        machine.getBus().store32(0x300, 0xDEADBEEF);
+        machine.load(file);
+
+        assertEquals(LOAD_ADDRESS, machine.getCpu().getProgramCounter());
+        assertEquals(PROGRAM[0], machine.getBus().load32(LOAD_ADDRESS));
+        assertEquals(0, machine.getBus().load32(0x300)); // Cleared as part of the .bss
+        assertEquals(ExitReason.EBREAK, TestMachines.runQuietly(machine));
+        assertEquals(4950, machine.getBus().load32(RESULT_ADDRESS));
+    }
+
+    @Test
+    public void segmentOutsideMemoryTest(@TempDir final Path directory) throws IOException {
+
+        final File file = directory.resolve("large").toFile();
+        writeElf(file, 243, LOAD_ADDRESS);
+
+        assertThrows(IOException.class, () -> new ElfLoader(new Machine(1024, WIDTH, HEIGHT).getMemory()).load(file));
+
+        // Images linked at the usual bare-metal base are refused, with the address shown unsigned
+        final File linked = directory.resolve("linked").toFile();
+        writeElf(linked, 243, 0x80000000);
+        final IOException error = assertThrows(IOException.class,
+                () -> new ElfLoader(new Machine(MEMORY_SIZE, WIDTH, HEIGHT).getMemory()).load(linked));
+        assertTrue(error.getMessage().contains("0x80000000"), error.getMessage());
+    }
+
+    @Test
+    public void rejectOtherMachineTest(@TempDir final Path directory) throws IOException {
+
+        final File file = directory.resolve("x86").toFile();
+        writeElf(file, 3, LOAD_ADDRESS);
+        final Machine machine = new Machine(MEMORY_SIZE, WIDTH, HEIGHT);
+
+        assertThrows(IOException.class, () -> new ElfLoader(machine.getMemory()).load(file));
+        assertThrows(IOException.class, () -> new ElfLoader(machine.getMemory()).load(
+                directory.resolve("missing").toFile()));
+        assertFalse(ElfLoader.isElf(directory.resolve("missing").toFile()));
+    }
+
+}
@@ -0,0 +1,66 @@
+package br.faustech.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ProgramCacheTest {
+
+    private static final String PROGRAM = """
+            00000000000100000000000010010011
+            00000000000100001000000010010011
+            00000000000100000000000001110011
+            """;
+
+    private static final int[] WORDS = {
+            0b00000000000100000000000010010011, // addi x1, x0, 1
+            0b00000000000100001000000010010011, // addi x1, x1, 1
+            0b00000000000100000000000001110011, // ebreak
+    };
+
+    @Test
+    public void cacheHitTest(@TempDir final Path directory) throws IOException {
+
+        final Path cacheDirectory = directory.resolve("cache");
+        final File file = directory.resolve("program.txt").toFile();
+        Files.writeString(file.toPath(), PROGRAM);
+
+        final ProgramCache cache = new ProgramCache(cacheDirectory);
+        final ProgramUtils programUtils = new ProgramUtils(null, cache);
+        assertArrayEquals(WORDS, programUtils.readFile(file));
+        assertEquals(1, cache.getMisses());
+        try (var images = Files.list(cacheDirectory)) {
+            assertEquals(1, images.count());
+        }
+
+        // A new cache over the same directory, as in the next launch, reads the image without parsing
+        final ProgramCache next = new ProgramCache(cacheDirectory);
+        assertArrayEquals(WORDS, new ProgramUtils(null, next).readFile(file));
+        assertEquals(1, next.getHits());
+        assertEquals(0, next.getMisses());
+    }
+
+    @Test
+    public void changedContentsTest(@TempDir final Path directory) throws IOException {
+
+        final File file = directory.resolve("program.txt").toFile();
+        final ProgramCache cache = new ProgramCache(directory.resolve("cache"));
+
+        Files.writeString(file.toPath(), PROGRAM);
+        assertArrayEquals(WORDS, cache.readTxtFile(file));
+
+        Files.writeString(file.toPath(), PROGRAM.replace("00000000000100001000000010010011", "00000000001000001000000010010011"));
+        final int[] changed = cache.readTxtFile(file);
+        assertEquals(0b00000000001000001000000010010011, changed[1]);
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+}
@@ -0,0 +1,70 @@
+package br.faustech.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ProgramUtilsTest {
+
+    /**
+     * Parses a program text line by line with Long.parseLong, the way the reader used to.
+     *
+     * @param lines the lines of the program
+     * @return the program words
+     */
+    private static int[] reference(final List<String> lines) {
+
+        return lines.stream().filter(line -> !line.isEmpty()).mapToInt(line -> (int) Long.parseLong(line, 2)).toArray();
+    }
+
+    private static int[] parse(final String text) {
+
+        return ProgramUtils.parseTxt(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void parseTxtTest() {
+
+        assertArrayEquals(new int[]{0b101, -1, 0x13}, parse(
+                "101\n11111111111111111111111111111111\r\n\n00000000000000000000000000010011"));
+        assertArrayEquals(new int[]{0}, parse("0\n"));
+        assertArrayEquals(new int[0], parse(""));
+        assertThrows(IllegalArgumentException.class, () -> parse("0101\n01x1\n"));
+    }
+
+    @Test
+    public void readDemoTest() throws IOException {
+
+        final File file = new File("src/test/demos/ufms_demo.txt");
+
+        assertArrayEquals(reference(Files.readAllLines(file.toPath())), new ProgramUtils(null).readTxtFile(file));
+    }
+
+    @Test
+    public void readLargeFileTest(@TempDir final Path directory) throws IOException {
+
+        // Large enough to be split into chunks parsed in parallel
+        final Random random = new Random(42);
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            final String word = Integer.toBinaryString(random.nextInt());
+            text.append("0".repeat(32 - word.length())).append(word).append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+        final File file = directory.resolve("large.txt").toFile();
+        Files.writeString(file.toPath(), text);
+
+        assertArrayEquals(reference(Files.readAllLines(file.toPath())), new ProgramUtils(null).readTxtFile(file));
+    }
+
+}
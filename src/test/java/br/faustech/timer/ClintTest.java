@@ -0,0 +1,87 @@
+package br.faustech.timer;
+
+import br.faustech.Machine;
+import br.faustech.Main;
+import br.faustech.bus.Bus;
+import br.faustech.cpu.ExitReason;
+import org.junit.jupiter.api.Test;
+
+import static br.faustech.TestMachines.HEIGHT;
+import static br.faustech.TestMachines.MEMORY_SIZE;
+import static br.faustech.TestMachines.WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClintTest {
+
+    private static final int[] PROGRAM = {
+            0b00000100000000000000001010010011, // addi x5, x0, 64
+            0b00110000010100101001000001110011, // csrrw x0, mtvec, x5
+            0b00000000000100000000001100010011, // addi x6, x0, 1
+            0b00110000010000110001000001110011, // csrrw x0, mie, x6
+            0b00000000000100111000001110010011, // addi x7, x7, 1
+            0b11111111110111111111000001101111, // jal x0, -4
+    };
+
+    private static final int[] HANDLER = {
+            0b01000000000000000010010000000011, // lw x8, 1024(x0)
+            0b00000000000101000000010000010011, // addi x8, x8, 1
+            0b01000000100000000010000000100011, // sw x8, 1024(x0)
+            0b00110000001000000000000001110011, // mret
+    };
+
+    /**
+     * Runs the interrupt counting program with mtime ticking once per retired instruction.
+     *
+     * @param blocks whether to run in block execution mode
+     * @return the number of timer interrupts handled
+     */
+    private static int countInterrupts(final boolean blocks) {
+
+        final Machine machine = new Machine(MEMORY_SIZE, WIDTH, HEIGHT);
+        machine.load(PROGRAM);
+        machine.getBus().write(64, HANDLER);
+        machine.getCpu().getClint().useInstructionClock(1);
+        machine.getCpu().setBlockExecution(blocks);
+
+        assertEquals(ExitReason.INSTRUCTION_LIMIT, machine.run(100_000, 60_000));
+        return machine.getBus().read(1024, 1028)[0];
+    }
+
+    @Test
+    public void deterministicTimerTest() {
+
+        Main.setLogEnabled(false);
+        try {
+            // The first interrupt fires after 1000 instructions, then one every 1000 loop plus 4 handler instructions
+            assertEquals(99, countInterrupts(false));
+            assertEquals(99, countInterrupts(false));
+            assertEquals(countInterrupts(true), countInterrupts(true));
+        } finally {
+            Main.setLogEnabled(true);
+        }
+    }
+
+    @Test
+    public void memoryMappedRegistersTest() {
+
+        final Machine machine = new Machine(MEMORY_SIZE, WIDTH, HEIGHT);
+        final Bus bus = machine.getBus();
+        final Clint clint = bus.getClint();
+        clint.useInstructionClock(1);
+
+        bus.write(Clint.BASE_ADDRESS + Clint.MTIME, new int[]{500, 0});
+        assertEquals(500, bus.read(Clint.BASE_ADDRESS + Clint.MTIME, Clint.BASE_ADDRESS + Clint.MTIME + 4)[0]);
+
+        bus.write(Clint.BASE_ADDRESS + Clint.MTIMECMP, new int[]{510, 0});
+        assertEquals(510, clint.getMtimecmp());
+        assertEquals(0, clint.getPeriod());
+        assertFalse(clint.isPending());
+        assertEquals(10, clint.instructionsUntilPending());
+
+        bus.write(Clint.BASE_ADDRESS + Clint.MTIME, new int[]{510});
+        assertTrue(clint.isPending());
+    }
+
+}